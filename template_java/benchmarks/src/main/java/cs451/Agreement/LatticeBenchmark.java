@@ -0,0 +1,96 @@
+package cs451.Agreement;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs451.Benchmarks.Fixtures;
+import cs451.Links.NullUDPHost;
+import cs451.Models.HostIP;
+import cs451.Models.Message;
+import cs451.Models.Metadata;
+import cs451.Models.MsgType;
+import cs451.Models.Proposal;
+
+/**
+ * LatticeAgreement.processProposal on proposals of the given number of values.
+ * - acceptSuperset : the proposal contains every accepted value and is acked
+ * - nackConflicting : a value was accepted that the proposal misses, so it is
+ * nacked with the accepted values
+ * The proposal is decoded and the answer encoded on every operation, as for a
+ * received proposal.
+ *
+ * Answers are never acknowledged by the proposer, so they stay in the stubborn
+ * link backlog. The stack is built again before every iteration, so that an
+ * iteration does not start with the heap left by the previous ones.
+ *
+ * Run with : java -jar target/benchmarks.jar LatticeBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 3, jvmArgsAppend = { "-Xmx3g", "-Dcs451.batchDelayMicros=0" })
+@State(Scope.Thread)
+public class LatticeBenchmark {
+
+    @Param({ "100", "10000" })
+    private int values;
+
+    private LatticeAgreement la;
+    private Message superset;
+    private Message conflicting;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        List<HostIP> hosts = Fixtures.hosts(3);
+        HostIP proposer = hosts.get(1);
+        la = new LatticeAgreement(new NullUDPHost(hosts.get(0)), Fixtures.executor(),
+                new LinkedHashSet<HostIP>(hosts));
+
+        Set<Integer> proposed = new HashSet<Integer>();
+        for (int i = 0; i < values; i++) {
+            proposed.add(i);
+        }
+        superset = proposal(proposer, new Proposal(0, proposed, 1));
+        conflicting = proposal(proposer, new Proposal(0, proposed, 2));
+        la.processProposal(proposal(proposer, new Proposal(0, Set.of(-1), 2)));
+    }
+
+    private static Message proposal(HostIP proposer, Proposal proposal) {
+        Metadata metadata = new Metadata(MsgType.PROPOSAL, proposer.getId(), 0, 0, proposer, null);
+        return new Message(metadata, proposal.toBytes());
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        Fixtures.stopTimers();
+    }
+
+    @Benchmark
+    public void acceptSuperset() {
+        la.processProposal(superset);
+    }
+
+    @Benchmark
+    public void nackConflicting() {
+        la.processProposal(conflicting);
+    }
+
+}
@@ -0,0 +1,123 @@
+package cs451.Benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import cs451.Models.HostIP;
+import cs451.Models.Message;
+import cs451.Models.MessageCodec;
+import cs451.Models.Metadata;
+import cs451.Models.MsgType;
+import cs451.Models.PeerTable;
+import cs451.Parser.Host;
+
+/**
+ * Compares the binary wire codec against Java serialization, which was used
+ * by Message.toBytes/fromBytes before, in bytes per message and ns per
+ * encode/decode. The cached row encodes a message whose encoding was already
+ * computed, as on every retransmission.
+ *
+ * Run with : java -cp target/benchmarks.jar cs451.Benchmarks.CodecBenchmark
+ */
+public class CodecBenchmark {
+
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    // prevents the JIT from discarding the benchmarked work
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        // decoding resolves the sender and reciever in the directory
+        PeerTable directory = PeerTable.initialize(List.of(hostIP(1, 11001), hostIP(2, 11002)));
+        HostIP sender = directory.get(1);
+        HostIP reciever = directory.get(2);
+
+        Message small = new Message(new Metadata(MsgType.DATA, 1, 2, 42, sender, reciever), "1".getBytes());
+        // a URB-style message, wrapping another encoded message
+        Message wrapped = new Message(new Metadata(MsgType.DATA, 2, 1, 42, reciever, sender), small.toBytes());
+
+        System.out.println(String.format("%-10s %-14s %10s %14s %14s", "message", "codec", "bytes/msg",
+                "encode ns/op", "decode ns/op"));
+        run("small", small);
+        run("wrapped", wrapped);
+        System.out.println(sink == 42 ? "" : " ");
+    }
+
+    private static void run(String name, Message m) throws Exception {
+        byte[] serialized = serialize(m);
+        byte[] encoded = m.toBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(encoded.length);
+
+        benchSerialization(m, serialized, WARMUP);
+        double[] legacy = benchSerialization(m, serialized, ITERATIONS);
+        benchCodec(m, encoded, buffer, WARMUP);
+        double[] codec = benchCodec(m, encoded, buffer, ITERATIONS);
+        Message cached = m.withLink(0, 0, 0);
+        cached.toBytes();
+        benchCodec(cached, encoded, buffer, WARMUP);
+        double[] cachedCodec = benchCodec(cached, encoded, buffer, ITERATIONS);
+
+        System.out.println(String.format("%-10s %-14s %10d %14.1f %14.1f", name, "serialization",
+                serialized.length, legacy[0], legacy[1]));
+        System.out.println(String.format("%-10s %-14s %10d %14.1f %14.1f", name, "binary", encoded.length,
+                codec[0], codec[1]));
+        System.out.println(String.format("%-10s %-14s %10d %14.1f %14.1f", name, "binary cached", encoded.length,
+                cachedCodec[0], cachedCodec[1]));
+    }
+
+    private static double[] benchSerialization(Message m, byte[] serialized, int iterations) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += serialize(m).length;
+        }
+        long encode = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += deserialize(serialized).getSeqNum();
+        }
+        long decode = System.nanoTime() - start;
+        return new double[] { (double) encode / iterations, (double) decode / iterations };
+    }
+
+    private static double[] benchCodec(Message m, byte[] encoded, ByteBuffer buffer, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            buffer.clear();
+            MessageCodec.encode(m, buffer);
+            sink += buffer.position();
+        }
+        long encode = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += MessageCodec.decode(encoded, 0, encoded.length).getSeqNum();
+        }
+        long decode = System.nanoTime() - start;
+        return new double[] { (double) encode / iterations, (double) decode / iterations };
+    }
+
+    private static byte[] serialize(Message m) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream outputStream = new ObjectOutputStream(bos);
+        outputStream.writeObject(m);
+        outputStream.close();
+        return bos.toByteArray();
+    }
+
+    private static Message deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        ObjectInputStream inputStream = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        return (Message) inputStream.readObject();
+    }
+
+    private static HostIP hostIP(int id, int port) {
+        Host host = new Host();
+        host.populate(Integer.toString(id), "127.0.0.1", Integer.toString(port));
+        return new HostIP(host);
+    }
+
+}
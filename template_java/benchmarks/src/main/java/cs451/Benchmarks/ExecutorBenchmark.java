@@ -0,0 +1,164 @@
+package cs451.Benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cs451.Broadcast.FIFOBroadcast;
+import cs451.Links.UDPHost;
+import cs451.Models.HostIP;
+import cs451.Models.PeerTable;
+import cs451.Models.Message;
+import cs451.Models.Metadata;
+import cs451.Models.MsgType;
+import cs451.Parser.Host;
+import cs451.utils.Execution;
+import cs451.utils.Options;
+
+/**
+ * Compares the platform and virtual thread executors on FIFO broadcast. Every
+ * process broadcasts the given number of messages, and the run ends once every
+ * process delivered every message, or after TIMEOUT_SECONDS.
+ * Each run starts a new JVM holding one stack per process over localhost, each
+ * with its own executor as separate processes would. Throughput counts
+ * deliveries per second over all processes, latency goes from the broadcast of
+ * a message to each of its deliveries.
+ * Options given to this JVM (-Dcs451.*) are passed to the runs; receive workers
+ * default to 0, as hundreds of stacks share the cores of a single JVM. On a JDK
+ * without virtual threads, the virtual runs fall back to platform threads.
+ *
+ * Run with : java -cp target/benchmarks.jar cs451.Benchmarks.ExecutorBenchmark [messages per process]
+ * [processes...]
+ */
+public class ExecutorBenchmark {
+
+    private static final int BASE_PORT = 12400;
+    private static final long TIMEOUT_SECONDS = 120;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("run")) {
+            run(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            System.exit(0);
+        }
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int[] sizes = args.length > 1
+                ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[] { 10, 50, 128 };
+
+        System.out.println(String.format("%-9s %9s %12s %12s %12s %12s %12s", "executor", "processes",
+                "delivered", "msg/s", "p50 ms", "p99 ms", "max ms"));
+        for (int processes : sizes) {
+            for (String mode : new String[] { "platform", "virtual" }) {
+                System.out.println(String.format("%-9s %9d %s", mode, processes, fork(mode, processes, messages)));
+            }
+        }
+    }
+
+    /**
+     * Runs the benchmark in a new JVM and returns the line it printed.
+     */
+    private static String fork(String mode, int processes, int messages) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("cs451.") && !key.equals(Options.EXECUTOR)) {
+                command.add("-D" + key + "=" + System.getProperty(key));
+            }
+        }
+        if (System.getProperty(Options.RECEIVE_WORKERS) == null) {
+            command.add("-D" + Options.RECEIVE_WORKERS + "=0");
+        }
+        command.add("-D" + Options.EXECUTOR + "=" + mode);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ExecutorBenchmark.class.getName());
+        command.add("run");
+        command.add(Integer.toString(processes));
+        command.add(Integer.toString(messages));
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String result = "failed";
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                result = line;
+            }
+        }
+        process.waitFor();
+        return result;
+    }
+
+    private static void run(int processes, int messages) throws InterruptedException {
+        if (Execution.isVirtual() && !Execution.usesVirtualThreads()) {
+            System.out.println("unavailable");
+            return;
+        }
+        List<Host> hosts = new ArrayList<Host>();
+        for (int id = 1; id <= processes; id++) {
+            Host host = new Host();
+            host.populate(Integer.toString(id), "127.0.0.1", Integer.toString(BASE_PORT + id));
+            hosts.add(host);
+        }
+
+        int expected = processes * processes * messages;
+        long[] latencies = new long[expected];
+        AtomicInteger delivered = new AtomicInteger(0);
+        CountDownLatch done = new CountDownLatch(expected);
+
+        Set<HostIP> destinations = HostIP.fromHosts(hosts);
+        PeerTable.initialize(destinations);
+        List<HostIP> senders = new ArrayList<HostIP>();
+        List<FIFOBroadcast> stacks = new ArrayList<FIFOBroadcast>();
+        for (Host host : hosts) {
+            ExecutorService executor = Execution.newExecutor();
+            UDPHost udpHost = UDPHost.create(host, executor);
+            stacks.add(new FIFOBroadcast(udpHost, destinations, executor) {
+                @Override
+                public void deliver(Message m) {
+                    super.deliver(m);
+                    int i = delivered.getAndIncrement();
+                    if (i < expected) {
+                        latencies[i] = System.nanoTime() - ByteBuffer.wrap(m.getData()).getLong();
+                        done.countDown();
+                    }
+                }
+            });
+            udpHost.receive();
+            senders.add(udpHost.getHostIP());
+        }
+
+        long start = System.nanoTime();
+        for (int seq = 1; seq <= messages; seq++) {
+            for (int p = 0; p < processes; p++) {
+                HostIP sender = senders.get(p);
+                Metadata metadata = new Metadata(MsgType.DATA, sender.getId(), 0, seq, sender, null);
+                stacks.get(p).broadcast(new Message(metadata, ByteBuffer.allocate(8).putLong(System.nanoTime()).array()));
+            }
+        }
+        done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int count = Math.min(delivered.get(), expected);
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        if (count == 0) {
+            System.out.println(String.format("%12s", "0/" + expected));
+            return;
+        }
+        System.out.println(String.format("%12s %12.0f %12.1f %12.1f %12.1f", count + "/" + expected,
+                count / seconds, sorted[count / 2] / 1e6, sorted[count * 99 / 100] / 1e6, sorted[count - 1] / 1e6));
+        // the stacks are left running until the JVM exits, their timers would
+        // report the closed sockets
+    }
+
+}
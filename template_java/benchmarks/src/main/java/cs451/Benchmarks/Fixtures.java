@@ -0,0 +1,124 @@
+package cs451.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import cs451.Models.HostIP;
+import cs451.Models.Message;
+import cs451.Models.Metadata;
+import cs451.Models.MsgType;
+import cs451.Models.PeerTable;
+import cs451.Parser.Host;
+import cs451.utils.Clock;
+import cs451.utils.Execution;
+
+/**
+ * Synthetic inputs shared by the JMH benchmarks.
+ * The stacks under test run on the system clock, with daemon timers that
+ * {@link #stopTimers()} shuts down, so that a benchmark can drop its stack and
+ * build a new one without the timers of the old one keeping it alive.
+ */
+public class Fixtures {
+
+    private static final int BASE_PORT = 12800;
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "benchmark-stack");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final List<ScheduledExecutorService> schedulers = new CopyOnWriteArrayList<ScheduledExecutorService>();
+
+    static {
+        Execution.setClock(new Clock() {
+            @Override
+            public long nanoTime() {
+                return System.nanoTime();
+            }
+
+            @Override
+            public ScheduledExecutorService newScheduler() {
+                ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "benchmark-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                schedulers.add(scheduler);
+                return scheduler;
+            }
+        });
+    }
+
+    private Fixtures() {
+    }
+
+    /**
+     * Shuts down the timers of every stack built so far. Stacks built before
+     * must no longer be used.
+     */
+    public static void stopTimers() {
+        for (ScheduledExecutorService scheduler : schedulers) {
+            scheduler.shutdownNow();
+        }
+        schedulers.clear();
+    }
+
+    /**
+     * Registers processes 1 to n on the loopback address and returns their
+     * hosts, as held by the directory. The benchmarks run as process 1.
+     *
+     * @param n number of processes
+     * @return the hosts, ordered by id
+     */
+    public static List<HostIP> hosts(int n) {
+        List<Host> hosts = new ArrayList<Host>();
+        for (int id = 1; id <= n; id++) {
+            Host host = new Host();
+            host.populate(Integer.toString(id), "127.0.0.1", Integer.toString(BASE_PORT + id));
+            hosts.add(host);
+        }
+        return new ArrayList<HostIP>(PeerTable.initialize(HostIP.fromHosts(hosts)).getPeers());
+    }
+
+    /**
+     * Returns the executor given to the stacks under test. Its threads are
+     * daemons, so stacks left running do not keep the forked JVM alive.
+     *
+     * @return the executor
+     */
+    public static ExecutorService executor() {
+        return executor;
+    }
+
+    /**
+     * Returns a message broadcast by the given origin, with a 4 byte payload.
+     *
+     * @param origin the broadcasting process
+     * @param seqNum the sequence number of the message
+     * @return the message
+     */
+    public static Message broadcast(HostIP origin, int seqNum) {
+        Metadata metadata = new Metadata(MsgType.DATA, origin.getId(), 0, seqNum, origin, null);
+        return new Message(metadata, "1234".getBytes());
+    }
+
+    /**
+     * Wraps an encoded message as a best effort broadcast delivers it, once
+     * forwarded by the given process.
+     *
+     * @param encoded   the encoded message
+     * @param forwarder the process relaying it
+     * @param me        the delivering process
+     * @return the delivered message
+     */
+    public static Message forwarded(byte[] encoded, HostIP forwarder, HostIP me) {
+        Metadata metadata = new Metadata(MsgType.DATA, forwarder.getId(), me.getId(), 0, forwarder, me);
+        return new Message(metadata, encoded);
+    }
+
+}
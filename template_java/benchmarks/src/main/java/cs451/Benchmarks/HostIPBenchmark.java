@@ -0,0 +1,85 @@
+package cs451.Benchmarks;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs451.Models.HostIP;
+import cs451.Parser.Host;
+
+/**
+ * Hashing of HostIP, as done by the sets and maps of hosts of the broadcast
+ * layers. Lookups use copies of the registered hosts, so that equals does not
+ * stop at the identity check.
+ *
+ * Run with : java -jar target/benchmarks.jar HostIPBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(3)
+@State(Scope.Thread)
+public class HostIPBenchmark {
+
+    @Param({ "10", "128" })
+    private int processes;
+
+    private HostIP[] copies;
+    private Set<HostIP> set;
+    private Map<HostIP, Integer> map;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<HostIP> hosts = Fixtures.hosts(processes);
+        set = new HashSet<HostIP>(hosts);
+        map = new HashMap<HostIP, Integer>();
+        copies = new HostIP[hosts.size()];
+        for (int i = 0; i < hosts.size(); i++) {
+            HostIP host = hosts.get(i);
+            map.put(host, i);
+            Host parsed = new Host();
+            parsed.populate(Integer.toString(host.getId()), host.getAddress().getHostAddress(),
+                    Integer.toString(host.getPort()));
+            copies[i] = new HostIP(parsed);
+        }
+    }
+
+    private HostIP next() {
+        HostIP host = copies[next];
+        next = next + 1 == copies.length ? 0 : next + 1;
+        return host;
+    }
+
+    @Benchmark
+    public int hashCodeOf() {
+        return next().hashCode();
+    }
+
+    @Benchmark
+    public boolean setContains() {
+        return set.contains(next());
+    }
+
+    @Benchmark
+    public Integer mapGet() {
+        return map.get(next());
+    }
+
+}
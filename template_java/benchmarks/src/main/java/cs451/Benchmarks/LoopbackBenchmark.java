@@ -0,0 +1,87 @@
+package cs451.Benchmarks;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import cs451.Links.LoopbackNetwork;
+import cs451.Links.LoopbackUDPHost;
+import cs451.Links.UDPHost;
+import cs451.Models.HostIP;
+import cs451.Models.PeerTable;
+import cs451.Parser.Host;
+import cs451.utils.Execution;
+import cs451.utils.Metrics;
+import cs451.utils.Options;
+import cs451.utils.Pipeline;
+
+/**
+ * Runs the full stack of the given number of processes in this JVM over a
+ * {@link LoopbackNetwork}, to measure the protocols without sockets.
+ * Every process broadcasts the given number of messages, or proposes that many
+ * slots, and the run ends once every process delivered every message or decided
+ * every slot (see Workload), or after TIMEOUT_SECONDS.
+ * Throughput counts deliveries, or decisions, per second over all processes.
+ * The metrics of the stacks follow, summed over all processes.
+ *
+ * The pipeline defaults to fused, the stacks then share one executor as no
+ * task ever blocks. In reactive mode, a full SubmissionPublisher blocks the
+ * thread submitting to it, so each stack gets its own executor as separate
+ * processes would. Other options are given as usual (-Dcs451.*).
+ *
+ * Run with : java -cp target/benchmarks.jar cs451.Benchmarks.LoopbackBenchmark
+ * [beb|urb|fifo|lattice] [processes] [messages per process]
+ */
+public class LoopbackBenchmark {
+
+    private static final int BASE_PORT = 12600;
+    private static final long TIMEOUT_SECONDS = 300;
+
+    public static void main(String[] args) throws InterruptedException {
+        String mode = args.length > 0 ? args[0] : "fifo";
+        int processes = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int messages = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        if (System.getProperty(Options.PIPELINE) == null) {
+            System.setProperty(Options.PIPELINE, "fused");
+        }
+        if (System.getProperty(Options.METRICS) == null) {
+            System.setProperty(Options.METRICS, "true");
+        }
+
+        Workload workload = new Workload(mode, processes, messages);
+        List<Host> hosts = Workload.hosts(processes, BASE_PORT);
+        Set<HostIP> destinations = HostIP.fromHosts(hosts);
+        PeerTable.initialize(destinations);
+        ExecutorService shared = Pipeline.isFused() ? Execution.newExecutor() : null;
+        LoopbackNetwork network = new LoopbackNetwork();
+
+        UDPHost[] udpHosts = new UDPHost[processes];
+        for (int p = 0; p < processes; p++) {
+            ExecutorService executor = shared != null ? shared : Execution.newExecutor();
+            udpHosts[p] = new LoopbackUDPHost(hosts.get(p), executor, network);
+            workload.add(udpHosts[p], destinations, executor);
+        }
+        for (UDPHost udpHost : udpHosts) {
+            udpHost.receive();
+        }
+
+        long start = System.nanoTime();
+        workload.begin();
+        for (int seq = 1; seq <= messages; seq++) {
+            for (int p = 0; p < processes; p++) {
+                workload.submit(p, seq);
+            }
+        }
+        workload.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(Workload.header());
+        System.out.println(workload.report(seconds));
+        System.out.println(Metrics.snapshot(workload.getMetrics()));
+        // the timers of the stacks keep the JVM alive
+        System.exit(0);
+    }
+
+}
@@ -0,0 +1,78 @@
+package cs451.Benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs451.Models.HostIP;
+import cs451.Models.Message;
+import cs451.Models.Metadata;
+import cs451.Models.MsgType;
+
+/**
+ * Message.toBytes and Message.fromBytes, for a plain message and for a message
+ * wrapping another one as URB and FIFO do. toBytes encodes a new message on
+ * every call, toBytesCached returns the encoding cached by the first call, as on
+ * retransmissions.
+ *
+ * Run with : java -jar target/benchmarks.jar MessageBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(3)
+@State(Scope.Thread)
+public class MessageBenchmark {
+
+    @Param({ "4", "256" })
+    private int payloadBytes;
+
+    private Metadata metadata;
+    private byte[] data;
+    private Message cached;
+    private byte[] encoded;
+    private byte[] wrapped;
+
+    @Setup
+    public void setup() {
+        List<HostIP> hosts = Fixtures.hosts(2);
+        metadata = new Metadata(MsgType.DATA, 1, 2, 42, hosts.get(0), hosts.get(1));
+        data = new byte[payloadBytes];
+        cached = new Message(metadata, data);
+        encoded = cached.toBytes();
+        wrapped = Fixtures.forwarded(encoded, hosts.get(1), hosts.get(0)).toBytes();
+    }
+
+    @Benchmark
+    public byte[] toBytes() {
+        return new Message(metadata, data).toBytes();
+    }
+
+    @Benchmark
+    public byte[] toBytesCached() {
+        return cached.toBytes();
+    }
+
+    @Benchmark
+    public Message fromBytes() {
+        return Message.fromBytes(encoded);
+    }
+
+    @Benchmark
+    public Message fromBytesWrapped() {
+        return Message.fromBytes(Message.fromBytes(wrapped).getData());
+    }
+
+}
@@ -0,0 +1,143 @@
+package cs451.Benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.SynchronousQueue;
+import java.util.function.Consumer;
+
+import cs451.Links.PerfectLink;
+import cs451.Links.UDPHost;
+import cs451.Models.HostIP;
+import cs451.Models.Message;
+import cs451.Models.Metadata;
+import cs451.Models.MsgType;
+import cs451.Models.PeerTable;
+import cs451.Parser.Host;
+import cs451.utils.Options;
+
+/**
+ * Measures the round trip of a message between two perfect link stacks over
+ * localhost, in the reactive and fused pipeline modes. One process echoes every
+ * message it delivers, the other sends the next message once the echo is back,
+ * so a round trip goes up the receiving stack twice.
+ * Batching is disabled unless cs451.batchDelayMicros is set, as it would add
+ * its delay to every hop.
+ *
+ * Run with : java -cp target/benchmarks.jar cs451.Benchmarks.PipelineBenchmark [round trips]
+ */
+public class PipelineBenchmark {
+
+    private static final int WARMUP = 2_000;
+    private static final int BASE_PORT = 12300;
+
+    public static void main(String[] args) throws Exception {
+        int roundTrips = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        if (System.getProperty(Options.BATCH_DELAY_MICROS) == null) {
+            System.setProperty(Options.BATCH_DELAY_MICROS, "0");
+        }
+
+        System.out.println(String.format("%-10s %12s %12s %12s %12s", "pipeline", "round trips", "mean us",
+                "p50 us", "p99 us"));
+        // each run uses its own pair of processes, all in the directory
+        String[] modes = { "reactive", "fused" };
+        List<Host> hosts = new ArrayList<Host>();
+        for (int id = 1; id <= 2 * modes.length; id++) {
+            hosts.add(host(id, BASE_PORT + id));
+        }
+        PeerTable.initialize(HostIP.fromHosts(hosts));
+        for (int i = 0; i < modes.length; i++) {
+            System.setProperty(Options.PIPELINE, modes[i]);
+            long[] rtts = run(hosts.get(2 * i), hosts.get(2 * i + 1), roundTrips);
+            long sum = 0;
+            for (long rtt : rtts) {
+                sum += rtt;
+            }
+            Arrays.sort(rtts);
+            System.out.println(String.format("%-10s %12d %12.1f %12.1f %12.1f", modes[i], roundTrips,
+                    sum / 1e3 / rtts.length, rtts[rtts.length / 2] / 1e3, rtts[rtts.length * 99 / 100] / 1e3));
+        }
+        System.exit(0);
+    }
+
+    private static long[] run(Host pingProcess, Host pongProcess, int roundTrips) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        UDPHost pingHost = UDPHost.create(pingProcess, executor);
+        UDPHost pongHost = UDPHost.create(pongProcess, executor);
+        HostIP ping = pingHost.getHostIP();
+        HostIP pong = pongHost.getHostIP();
+        PerfectLink pingLink = new PerfectLink(pingHost, executor);
+        PerfectLink pongLink = new PerfectLink(pongHost, executor);
+
+        pongLink.subscribe(new Handler(m -> pongLink.send(message(pong, ping, m.getData()), ping)));
+        SynchronousQueue<byte[]> echoes = new SynchronousQueue<byte[]>();
+        pingLink.subscribe(new Handler(m -> {
+            try {
+                echoes.put(m.getData());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        pingHost.receive();
+        pongHost.receive();
+
+        long[] rtts = new long[roundTrips];
+        for (int i = -WARMUP; i < roundTrips; i++) {
+            long start = System.nanoTime();
+            byte[] payload = ByteBuffer.allocate(8).putLong(start).array();
+            pingLink.send(message(ping, pong, payload), pong);
+            long sent = ByteBuffer.wrap(echoes.take()).getLong();
+            if (i >= 0) {
+                rtts[i] = System.nanoTime() - sent;
+            }
+        }
+        // the stacks are left running, their timers would report the closed sockets
+        return rtts;
+    }
+
+    private static Message message(HostIP from, HostIP to, byte[] payload) {
+        return new Message(new Metadata(MsgType.DATA, from.getId(), to.getId(), 0, from, to), payload);
+    }
+
+    private static Host host(int id, int port) {
+        Host host = new Host();
+        host.populate(Integer.toString(id), "127.0.0.1", Integer.toString(port));
+        return host;
+    }
+
+    private static class Handler implements Subscriber<Message> {
+        private final Consumer<Message> onMessage;
+        private Subscription subscription;
+
+        public Handler(Consumer<Message> onMessage) {
+            this.onMessage = onMessage;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(Message item) {
+            onMessage.accept(item);
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throwable.printStackTrace();
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package cs451.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import cs451.Models.HostIP;
+import cs451.Models.PeerTable;
+import cs451.Parser.Host;
+import cs451.Simulation.Network;
+import cs451.Simulation.SimulatedUDPHost;
+import cs451.Simulation.Simulation;
+import cs451.utils.Execution;
+import cs451.utils.Metrics;
+import cs451.utils.Options;
+
+/**
+ * Runs the full stack of the given number of processes in a deterministic
+ * simulation (see Simulation), in virtual time over a simulated network.
+ * Every process broadcasts the given number of messages, or proposes that many
+ * slots (see Workload), then the simulation runs until every stack is idle or
+ * for SIM_DURATION_SECONDS of virtual time.
+ * Throughput and latency are in virtual time, up to the last delivery or
+ * decision. They are followed by the virtual duration of the run, the wall time
+ * it took, the number of events, then the metrics, where sim.datagrams and
+ * sim.bytes count what the processes sent over the network.
+ *
+ * The network and crashes are set with the cs451.sim* options, e.g.
+ * -Dcs451.simLoss=0.1 -Dcs451.simJitterMicros=2000 -Dcs451.simCrashes=3@1000.
+ * The same options and seed give the same run. The pipeline is always fused.
+ *
+ * Run with : java -cp target/benchmarks.jar cs451.Benchmarks.SimulationBenchmark
+ * [beb|urb|fifo|lattice] [processes] [messages per process]
+ */
+public class SimulationBenchmark {
+
+    private static final int BASE_PORT = 12700;
+
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "fifo";
+        int processes = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int messages = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        long duration = TimeUnit.SECONDS.toNanos(Options.getInt(Options.SIM_DURATION_SECONDS, 3600));
+
+        System.setProperty(Options.PIPELINE, "fused");
+        if (System.getProperty(Options.METRICS) == null) {
+            System.setProperty(Options.METRICS, "true");
+        }
+        Simulation simulation = new Simulation();
+        Execution.setClock(simulation);
+        Network network = new Network(simulation);
+
+        Workload workload = new Workload(mode, processes, messages);
+        List<Host> hosts = Workload.hosts(processes, BASE_PORT);
+        Set<HostIP> destinations = HostIP.fromHosts(hosts);
+        PeerTable.initialize(destinations);
+        for (Host host : hosts) {
+            simulation.run(host.getId(), () -> {
+                SimulatedUDPHost udpHost = new SimulatedUDPHost(host, simulation, network);
+                workload.add(udpHost, destinations, simulation.getExecutor());
+                udpHost.receive();
+            });
+        }
+
+        long start = System.nanoTime();
+        workload.begin();
+        for (int seq = 1; seq <= messages; seq++) {
+            for (int p = 0; p < processes; p++) {
+                int process = p;
+                int slot = seq;
+                simulation.run(hosts.get(p).getId(), () -> workload.submit(process, slot));
+            }
+        }
+        boolean idle = simulation.runUntil(duration);
+        double wall = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(Workload.header());
+        System.out.println(workload.report(workload.getSeconds()));
+        System.out.println(String.format("virtual %.3f s%s, wall %.1f s, %d events",
+                simulation.nanoTime() / 1e9, idle ? "" : " (stopped)", wall, simulation.getProcessed()));
+        List<Metrics> registries = new ArrayList<Metrics>(workload.getMetrics());
+        registries.add(network.getMetrics());
+        System.out.println(Metrics.snapshot(registries));
+    }
+
+}
@@ -0,0 +1,108 @@
+package cs451.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import cs451.Links.TimingWheel;
+
+/**
+ * Compares the hashed timing wheel used by StubbornLink for retransmissions
+ * against one task per message on a ScheduledExecutorService, as the link did
+ * before, in ns per arm and cancel and in time to expire every timeout.
+ *
+ * Run with : java -cp target/benchmarks.jar cs451.Benchmarks.TimerBenchmark [timeouts]
+ */
+public class TimerBenchmark {
+
+    private static final long DELAY_MILLIS = 5000;
+    private static final long EXPIRY_DELAY_MILLIS = 100;
+
+    public static void main(String[] args) throws Exception {
+        int timeouts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        System.out.println(String.format("%-10s %12s %14s %14s %14s", "timer", "timeouts", "arm ns/op",
+                "cancel ns/op", "expire all ms"));
+        // first round warms up the JIT
+        for (int round = 0; round < 2; round++) {
+            double[] scheduler = benchScheduler(timeouts);
+            double[] wheel = benchWheel(timeouts);
+            if (round == 1) {
+                print("scheduler", timeouts, scheduler);
+                print("wheel", timeouts, wheel);
+            }
+        }
+    }
+
+    private static void print(String name, int timeouts, double[] result) {
+        System.out.println(String.format("%-10s %12d %14.1f %14.1f %14.1f", name, timeouts, result[0],
+                result[1], result[2]));
+    }
+
+    private static double[] benchScheduler(int timeouts) throws InterruptedException {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        ScheduledFuture<?>[] futures = new ScheduledFuture<?>[timeouts];
+        Runnable noop = () -> {
+        };
+
+        long start = System.nanoTime();
+        for (int i = 0; i < timeouts; i++) {
+            futures[i] = scheduler.schedule(noop, DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        long arm = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < timeouts; i++) {
+            futures[i].cancel(false);
+        }
+        long cancel = System.nanoTime() - start;
+        scheduler.purge();
+
+        CountDownLatch expired = new CountDownLatch(timeouts);
+        start = System.nanoTime();
+        for (int i = 0; i < timeouts; i++) {
+            scheduler.schedule(expired::countDown, EXPIRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        expired.await();
+        long expire = System.nanoTime() - start;
+        scheduler.shutdownNow();
+        return new double[] { (double) arm / timeouts, (double) cancel / timeouts, expire / 1e6 };
+    }
+
+    private static double[] benchWheel(int timeouts) throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+        CountDownLatch expired = new CountDownLatch(timeouts);
+        TimingWheel<Integer> wheel = new TimingWheel<Integer>(10, 512, scheduler, due -> {
+            for (int i = 0; i < due.size(); i++) {
+                expired.countDown();
+            }
+        });
+        List<TimingWheel.Timeout<Integer>> armed = new ArrayList<TimingWheel.Timeout<Integer>>(timeouts);
+        Integer item = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < timeouts; i++) {
+            armed.add(wheel.arm(item, DELAY_MILLIS));
+        }
+        long arm = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < timeouts; i++) {
+            armed.get(i).cancel();
+        }
+        long cancel = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < timeouts; i++) {
+            wheel.arm(item, EXPIRY_DELAY_MILLIS);
+        }
+        expired.await();
+        long expire = System.nanoTime() - start;
+        scheduler.shutdownNow();
+        return new double[] { (double) arm / timeouts, (double) cancel / timeouts, expire / 1e6 };
+    }
+
+}
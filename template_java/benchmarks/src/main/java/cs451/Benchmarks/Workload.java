@@ -0,0 +1,251 @@
+package cs451.Benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import cs451.Agreement.Agreement;
+import cs451.Agreement.LatticeAgreement;
+import cs451.Broadcast.BestEffortBroadcast;
+import cs451.Broadcast.Broadcaster;
+import cs451.Broadcast.FIFOBroadcast;
+import cs451.Broadcast.UniformReliableBroadcast;
+import cs451.Links.UDPHost;
+import cs451.Models.HostIP;
+import cs451.Models.Message;
+import cs451.Models.Metadata;
+import cs451.Models.MsgType;
+import cs451.Models.Proposal;
+import cs451.Parser.Host;
+import cs451.utils.Execution;
+import cs451.utils.Histogram;
+import cs451.utils.Metrics;
+
+/**
+ * Stacks of the processes of a benchmark running in this JVM, and the work
+ * they are given.
+ * In the broadcast modes (beb, urb, fifo), every process broadcasts the given
+ * number of messages and the work is done once every process delivered every
+ * message. In lattice mode, every process proposes that many slots and the
+ * work is done once every process decided every slot.
+ * Latency goes from the broadcast of a message to each of its deliveries, or
+ * from the start of the work to each decision as every slot is proposed at
+ * once. Times are read from the installed clock (see Execution).
+ */
+class Workload {
+
+    static final String MODES = "beb, urb, fifo or lattice";
+    // values a lattice proposal picks from
+    private static final int LATTICE_VALUES = 16;
+
+    private final String mode;
+    private final int expected;
+    private final CountDownLatch done;
+    private final Histogram latencies = new Histogram();
+    private final List<HostIP> senders = new ArrayList<HostIP>();
+    private final List<Broadcaster> broadcasters = new ArrayList<Broadcaster>();
+    private final List<Agreement> agreements = new ArrayList<Agreement>();
+    private final List<Metrics> metrics = new ArrayList<Metrics>();
+    private long start;
+    private long last;
+
+    /**
+     * Creates the work of the given number of processes.
+     *
+     * @param mode      protocol to run, one of MODES
+     * @param processes number of processes
+     * @param messages  messages broadcast, or slots proposed, by each process
+     */
+    Workload(String mode, int processes, int messages) {
+        if (!isMode(mode)) {
+            throw new IllegalArgumentException("Unknown mode " + mode + ", expected " + MODES);
+        }
+        this.mode = mode;
+        expected = isLattice() ? processes * messages : processes * processes * messages;
+        done = new CountDownLatch(expected);
+    }
+
+    private static boolean isMode(String mode) {
+        return mode.equals("beb") || mode.equals("urb") || mode.equals("fifo") || mode.equals("lattice");
+    }
+
+    /**
+     * Returns the hosts of the processes, numbered from 1 on localhost.
+     *
+     * @param processes number of processes
+     * @param basePort  the port of a process is basePort + its id
+     * @return the hosts
+     */
+    static List<Host> hosts(int processes, int basePort) {
+        List<Host> hosts = new ArrayList<Host>();
+        for (int id = 1; id <= processes; id++) {
+            Host host = new Host();
+            host.populate(Integer.toString(id), "127.0.0.1", Integer.toString(basePort + id));
+            hosts.add(host);
+        }
+        return hosts;
+    }
+
+    private boolean isLattice() {
+        return mode.equals("lattice");
+    }
+
+    /**
+     * Builds the stack of the next process on its host.
+     *
+     * @param host         host of the process
+     * @param destinations every process
+     * @param executor     executor of the stack
+     */
+    void add(UDPHost host, Set<HostIP> destinations, ExecutorService executor) {
+        switch (mode) {
+            case "beb":
+                broadcasters.add(new BestEffortBroadcast(host, destinations, executor) {
+                    @Override
+                    public void deliver(Message msg) {
+                        super.deliver(msg);
+                        if (msg.getType() == MsgType.DATA) {
+                            delivered(msg);
+                        }
+                    }
+                });
+                break;
+            case "urb":
+                broadcasters.add(new UniformReliableBroadcast(host, destinations, executor) {
+                    @Override
+                    public void deliver(Message msg) {
+                        super.deliver(msg);
+                        delivered(msg);
+                    }
+                });
+                break;
+            case "fifo":
+                broadcasters.add(new FIFOBroadcast(host, destinations, executor) {
+                    @Override
+                    public void deliver(Message msg) {
+                        super.deliver(msg);
+                        delivered(msg);
+                    }
+                });
+                break;
+            default:
+                agreements.add(new LatticeAgreement(host, executor, destinations) {
+                    @Override
+                    public void decide(Proposal values) {
+                        super.decide(values);
+                        last = Execution.nanoTime();
+                        latencies.record((last - start) / 1000);
+                        done.countDown();
+                    }
+                });
+                break;
+        }
+        senders.add(host.getHostIP());
+        metrics.add(host.getMetrics());
+    }
+
+    /**
+     * Starts the work : latencies of decisions are measured from now.
+     */
+    void begin() {
+        start = Execution.nanoTime();
+    }
+
+    /**
+     * Broadcasts a message, or proposes a slot, from a process.
+     *
+     * @param process index of the process, in the order the stacks were added
+     * @param seq     sequence number of the message or slot, from 1 to messages
+     */
+    void submit(int process, int seq) {
+        HostIP sender = senders.get(process);
+        if (isLattice()) {
+            agreements.get(process).propose(new Proposal(0, values(sender.getId(), seq), seq));
+            return;
+        }
+        Metadata metadata = new Metadata(MsgType.DATA, sender.getId(), 0, seq, sender, null);
+        broadcasters.get(process).broadcast(
+                new Message(metadata, ByteBuffer.allocate(8).putLong(Execution.nanoTime()).array()));
+    }
+
+    /**
+     * Waits until the work is done.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of the timeout
+     * @return true if the work is done
+     */
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    /**
+     * Returns the time from the start of the work to the last delivery or
+     * decision, as read from the installed clock. Only meaningful once the
+     * stacks are idle.
+     *
+     * @return the duration in seconds
+     */
+    double getSeconds() {
+        return Math.max(0, last - start) / 1e9;
+    }
+
+    /**
+     * Returns the header of the lines of {@link #report(double)}.
+     *
+     * @return the header
+     */
+    static String header() {
+        return String.format("%-8s %9s %12s %12s %9s %12s %12s %12s", "mode", "processes", "delivered", "per s",
+                "seconds", "p50 ms", "p99 ms", "max ms");
+    }
+
+    /**
+     * Returns the deliveries, or decisions, made so far with their throughput
+     * and latency.
+     *
+     * @param seconds duration of the work
+     * @return the line
+     */
+    String report(double seconds) {
+        long count = expected - done.getCount();
+        return String.format("%-8s %9d %12s %12.0f %9.3f %12.1f %12.1f %12.1f", mode, senders.size(),
+                count + "/" + expected, count / seconds, seconds, latencies.getPercentile(50) / 1e3,
+                latencies.getPercentile(99) / 1e3, latencies.getMax() / 1e3);
+    }
+
+    /**
+     * Returns the metrics of the stacks, one registry per process.
+     *
+     * @return the registries
+     */
+    List<Metrics> getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Records the delivery of a broadcast carrying its broadcast time.
+     */
+    private void delivered(Message msg) {
+        last = Execution.nanoTime();
+        latencies.record((last - ByteBuffer.wrap(msg.getData()).getLong()) / 1000);
+        done.countDown();
+    }
+
+    /**
+     * Returns the values proposed by a process for a slot : two of
+     * LATTICE_VALUES, so that proposals of different processes overlap.
+     */
+    private static Set<Integer> values(int id, int slot) {
+        Set<Integer> values = new HashSet<Integer>();
+        values.add(id % LATTICE_VALUES);
+        values.add((id + slot) % LATTICE_VALUES);
+        return values;
+    }
+
+}
@@ -0,0 +1,97 @@
+package cs451.Broadcast;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs451.Benchmarks.Fixtures;
+import cs451.Links.NullUDPHost;
+import cs451.Models.HostIP;
+import cs451.Models.Message;
+import cs451.Models.MessageCodec;
+
+/**
+ * FIFOBroadcast.processMsg ordering on synthetic URB deliveries.
+ * Each operation receives the broadcast that follows the last delivered one by
+ * the given window : it carries the window - 1 broadcasts in between in its
+ * past, which are sorted and delivered first. A window of 1 is a broadcast
+ * received in order with an empty past. The score is per received broadcast,
+ * each delivering window messages.
+ *
+ * Delivered messages are never acknowledged by the other processes, so they
+ * stay in the past of the origin. The stack is built again before every
+ * iteration, so that an iteration does not start with the heap left by the
+ * previous ones.
+ *
+ * Run with : java -jar target/benchmarks.jar FifoBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 3, jvmArgsAppend = { "-Xmx3g", "-Dcs451.batchDelayMicros=0" })
+@State(Scope.Thread)
+public class FifoBenchmark {
+
+    @Param({ "1", "16", "64" })
+    private int window;
+
+    private FIFOBroadcast fifo;
+    private Message reception;
+    private ByteBuffer payload;
+    // offsets of the sequence numbers of the payload, past first
+    private int[] seqNumOffsets;
+    private int delivered;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        delivered = 0;
+        List<HostIP> hosts = Fixtures.hosts(3);
+        HostIP me = hosts.get(0);
+        HostIP origin = hosts.get(1);
+        fifo = new FIFOBroadcast(new NullUDPHost(me), new LinkedHashSet<HostIP>(hosts), Fixtures.executor());
+
+        // layout of FIFOBroadcast.prepareMessage, the past of the origin only
+        Message message = Fixtures.broadcast(origin, 0);
+        int frameSize = MessageCodec.encodedSize(message);
+        payload = ByteBuffer.allocate(4 + 2 + 4 + window * frameSize);
+        payload.putInt(1);
+        payload.putShort((short) origin.getId());
+        payload.putInt(window - 1);
+        seqNumOffsets = new int[window];
+        for (int i = 0; i < window; i++) {
+            seqNumOffsets[i] = payload.position() + MessageCodec.SEQ_NUM_OFFSET;
+            MessageCodec.encode(message, payload);
+        }
+        reception = Fixtures.forwarded(payload.array(), origin, me);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        Fixtures.stopTimers();
+    }
+
+    @Benchmark
+    public void processMsg() {
+        for (int offset : seqNumOffsets) {
+            payload.putInt(offset, ++delivered);
+        }
+        fifo.processMsg(reception);
+    }
+
+}
@@ -0,0 +1,122 @@
+package cs451.Broadcast;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cs451.Benchmarks.Fixtures;
+import cs451.Links.NullUDPHost;
+import cs451.Models.HostIP;
+import cs451.Models.Message;
+import cs451.Models.MessageCodec;
+
+/**
+ * URB process and checkDeliver on synthetic receptions, the stack below
+ * discarding what URB forwards.
+ * - processBroadcast : a new broadcast received from every process, the first
+ * reception forwarding it and the majority delivering it
+ * - processDuplicate : a reception of an already delivered broadcast, the
+ * common case as each broadcast is received from every process
+ * - checkDeliverDuplicate : the delivery check alone for such a broadcast
+ *
+ * Forwarded messages are never acknowledged, so processBroadcast keeps them in
+ * the stubborn link backlogs. The stack is built again before every iteration,
+ * so that an iteration does not start with the heap left by the previous ones.
+ *
+ * Run with : java -jar target/benchmarks.jar UrbBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 3, jvmArgsAppend = { "-Xmx3g", "-Dcs451.batchDelayMicros=0" })
+@State(Scope.Thread)
+public class UrbBenchmark {
+
+    private static final int DELIVERED = 256;
+
+    @Param({ "8", "64" })
+    private int processes;
+
+    private UniformReliableBroadcast urb;
+    // a broadcast as forwarded by every process, sharing one encoding
+    private Message[] round;
+    private ByteBuffer roundEncoding;
+    private int seqNum;
+    // receptions and decoded messages of delivered broadcasts
+    private Message[] receptions;
+    private Message[] delivered;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        seqNum = DELIVERED;
+        next = 0;
+        List<HostIP> hosts = Fixtures.hosts(processes);
+        HostIP me = hosts.get(0);
+        HostIP origin = hosts.get(1);
+        urb = new UniformReliableBroadcast(new NullUDPHost(me), new LinkedHashSet<HostIP>(hosts),
+                Fixtures.executor());
+
+        receptions = new Message[DELIVERED * processes];
+        delivered = new Message[DELIVERED];
+        for (int i = 0; i < DELIVERED; i++) {
+            byte[] encoded = Fixtures.broadcast(origin, i + 1).toBytes();
+            delivered[i] = Message.fromBytes(encoded);
+            for (int f = 0; f < processes; f++) {
+                receptions[i * processes + f] = Fixtures.forwarded(encoded, hosts.get(f), me);
+            }
+        }
+        for (Message reception : receptions) {
+            urb.process(reception);
+        }
+
+        byte[] encoded = Fixtures.broadcast(origin, seqNum).toBytes().clone();
+        roundEncoding = ByteBuffer.wrap(encoded);
+        round = new Message[processes];
+        for (int f = 0; f < processes; f++) {
+            round[f] = Fixtures.forwarded(encoded, hosts.get(f), me);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        Fixtures.stopTimers();
+    }
+
+    @Benchmark
+    public void processBroadcast() {
+        roundEncoding.putInt(MessageCodec.SEQ_NUM_OFFSET, ++seqNum);
+        for (Message reception : round) {
+            urb.process(reception);
+        }
+    }
+
+    @Benchmark
+    public void processDuplicate() {
+        urb.process(receptions[next]);
+        next = next + 1 == receptions.length ? 0 : next + 1;
+    }
+
+    @Benchmark
+    public void checkDeliverDuplicate() {
+        urb.checkDeliver(delivered[next]);
+        next = next + 1 == delivered.length ? 0 : next + 1;
+    }
+
+}
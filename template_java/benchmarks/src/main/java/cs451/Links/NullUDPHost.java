@@ -0,0 +1,86 @@
+package cs451.Links;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import cs451.Models.HostIP;
+import cs451.Models.Message;
+import cs451.utils.Metrics;
+
+/**
+ * Host that discards every datagram it is asked to send and never receives
+ * any, so that a layer can be benchmarked without the network. Messages sent
+ * by the stubborn links of the stack are never acknowledged : they stay
+ * outstanding or in the backlogs for the lifetime of the stack.
+ */
+public class NullUDPHost implements UDPHost {
+
+    private final HostIP hostIP;
+    private final AtomicInteger channels = new AtomicInteger(0);
+    private final Metrics metrics = new Metrics();
+    private final LongAdder sent = new LongAdder();
+
+    public NullUDPHost(HostIP hostIP) {
+        this.hostIP = hostIP;
+    }
+
+    @Override
+    public void send(ByteBuffer buffer, HostIP dest) {
+        sent.increment();
+    }
+
+    /**
+     * @return the number of datagrams discarded
+     */
+    public long getSent() {
+        return sent.sum();
+    }
+
+    @Override
+    public void receive() {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public int getPort() {
+        return hostIP.getPort();
+    }
+
+    @Override
+    public HostIP getHostIP() {
+        return hostIP;
+    }
+
+    @Override
+    public int openChannel() {
+        return channels.getAndIncrement();
+    }
+
+    @Override
+    public long getPoolExhaustions() {
+        return 0;
+    }
+
+    @Override
+    public List<RingStats> getReceiveRingStats() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Message> subscriber) {
+        // nothing is ever received
+    }
+
+}
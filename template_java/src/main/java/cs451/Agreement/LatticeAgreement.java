@@ -1,9 +1,5 @@
 package cs451.Agreement;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.util.HashSet;
@@ -15,6 +11,7 @@ import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Flow.Subscriber;
 import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,13 +25,14 @@ import cs451.Models.Metadata;
 import cs451.Models.MsgType;
 import cs451.Models.Proposal;
 import cs451.Parser.Host;
-import cs451.utils.Log;
+import cs451.utils.Metrics;
+import cs451.utils.OrderedLog;
+import cs451.utils.Trace;
 
 public class LatticeAgreement implements Agreement, Subscriber<Message> {
 
     private Map<Integer, LatticeState> slots;
     private Integer cntSlot;
-    private Subscription subscription;
     private Logger logger = Logger.getLogger(LatticeAgreement.class.getName());
 
     private HostIP myHostIP;
@@ -43,6 +41,11 @@ public class LatticeAgreement implements Agreement, Subscriber<Message> {
     private PerfectLink pl;
     private Set<HostIP> destinations;
     private Queue<Set<Integer>> pending;
+    private boolean mustLog = false;
+    private final LongAdder nackRounds;
+    private final LongAdder decided;
+    // decisions are written in slot order, slots are numbered from 1
+    private final OrderedLog decisions = new OrderedLog(1);
 
     public LatticeAgreement(UDPHost host, ExecutorService executor, Set<HostIP> destinations) {
         cntSlot = 0;
@@ -55,7 +58,15 @@ public class LatticeAgreement implements Agreement, Subscriber<Message> {
         pending = new ConcurrentLinkedDeque<Set<Integer>>();
         beb.subscribe(this);
         pl.subscribe(this);
-        logger.setLevel(Level.OFF);
+        logger.setLevel(Trace.LEVEL);
+        Metrics metrics = host.getMetrics();
+        nackRounds = metrics.counter("la.nackRounds");
+        decided = metrics.counter("la.decided");
+        metrics.gauge("la.waiting", decisions::getWaiting);
+    }
+
+    public void activateLogging() {
+        mustLog = true;
     }
 
     @Override
@@ -65,55 +76,25 @@ public class LatticeAgreement implements Agreement, Subscriber<Message> {
             state.setActive(true);
             slots.put(proposal.getSlot(), state);
         }
-        logger.info("[LA] - Proposing : " + proposal.toString());
+        if (Trace.ENABLED) {
+            logger.info("[LA] - Proposing : " + proposal.toString());
+        }
         Message m = prepareProposalMsg(proposal);
         beb.broadcast(empack(m));
     }
 
     private Message prepareProposalMsg(Proposal proposal) {
         Metadata metadata = new Metadata(MsgType.PROPOSAL, myHostIP.getId(), 0, 0, myHostIP, null);
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutputStream outputStream;
-        try {
-            outputStream = new ObjectOutputStream(bos);
-            outputStream.writeObject(proposal);
-            outputStream.flush();
-            outputStream.close();
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        byte[] data = bos.toByteArray();
-        return new Message(metadata, data);
+        return new Message(metadata, proposal.toBytes());
     }
 
     private byte[] prepareNackData(Proposal proposal, Set<Integer> acceptedValues) {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutputStream outputStream;
-        try {
-            outputStream = new ObjectOutputStream(bos);
-            Proposal p = new Proposal(proposal.getActivePropose(), acceptedValues, proposal.getSlot());
-            outputStream.writeObject(p);
-            outputStream.flush();
-            outputStream.close();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return bos.toByteArray();
+        Proposal p = new Proposal(proposal.getActivePropose(), acceptedValues, proposal.getSlot());
+        return p.toBytes();
     }
 
     private Proposal recoverProposal(Message m) {
-        ByteArrayInputStream bis = new ByteArrayInputStream(m.getData());
-        ObjectInputStream inputStream;
-        Proposal proposal = null;
-        try {
-            inputStream = new ObjectInputStream(bis);
-            proposal = (Proposal) inputStream.readObject();
-            inputStream.close();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return proposal;
+        return Proposal.fromBytes(m.getData());
     }
 
     private Message empack(Message m) {
@@ -129,16 +110,24 @@ public class LatticeAgreement implements Agreement, Subscriber<Message> {
 
     @Override
     public void decide(Proposal values) {
-        logger.log(Level.INFO, "Decided : " + values.toString());
-        String toLog = values.getProposedValues().stream().map(Object::toString).reduce((a, b) -> a + " " + b).get()
-                + "\n";
-        Log.addLog(values.getSlot(), toLog);
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "Decided : " + values.toString());
+        }
+        decided.increment();
+        if (mustLog) {
+            String toLog = values.getProposedValues().stream().map(Object::toString).reduce((a, b) -> a + " " + b)
+                    .get() + "\n";
+            decisions.add(values.getSlot(), toLog);
+        }
     }
 
-    private void processProposal(Message msg) {
+    // package-private for the JMH benchmarks
+    void processProposal(Message msg) {
         HostIP sender = msg.getSenderHostIP();
         Proposal proposal = recoverProposal(msg);
-        logger.info("[LA] - Processing proposal : " + proposal.toString());
+        if (Trace.ENABLED) {
+            logger.info("[LA] - Processing proposal : " + proposal.toString());
+        }
         LatticeState state = slots.get(proposal.getSlot());
         if (state == null) {
             state = new LatticeState(proposal.getSlot(), proposal.getProposedValues());
@@ -152,13 +141,17 @@ public class LatticeAgreement implements Agreement, Subscriber<Message> {
             buffer.putInt(proposal.getActivePropose());
             buffer.putInt(proposal.getSlot());
             Message ack = new Message(metadata, buffer.array());
-            logger.info("[LA] - Sending ACK for proposal : " + proposal.toString() + " to : " + sender.toString());
+            if (Trace.ENABLED) {
+                logger.info("[LA] - Sending ACK for proposal : " + proposal.toString() + " to : " + sender.toString());
+            }
             pl.send(empack(ack), sender);
         } else {
             state.getAcceptedValues().addAll(proposal.getProposedValues());
             Metadata metadata = new Metadata(MsgType.NACK, myHostIP.getId(), sender.getId(), 0, myHostIP, sender);
             Message nack = new Message(metadata, prepareNackData(proposal, state.getAcceptedValues()));
-            logger.info("[LA] - Sending NACK for proposal : " + proposal.toString() + " to : " + sender.toString());
+            if (Trace.ENABLED) {
+                logger.info("[LA] - Sending NACK for proposal : " + proposal.toString() + " to : " + sender.toString());
+            }
             pl.send(empack(nack), sender);
         }
     }
@@ -169,19 +162,27 @@ public class LatticeAgreement implements Agreement, Subscriber<Message> {
         int slot = buffer.getInt();
         LatticeState state = slots.get(slot);
         if (state == null) {
-            logger.info("[LA] - This state does not exist");
+            if (Trace.ENABLED) {
+                logger.info("[LA] - This state does not exist");
+            }
             return;
         }
         if (state.hasResponded(msg.getSenderHostIP())) {
-            logger.info("[LA] - Already responded to this proposal");
+            if (Trace.ENABLED) {
+                logger.info("[LA] - Already responded to this proposal");
+            }
             return;
         }
-        logger.info("[LA] - Processing ACK : " + msg.getMetadata().toString() + " with proposal : "
-                + proposalNb);
+        if (Trace.ENABLED) {
+            logger.info("[LA] - Processing ACK : " + msg.getMetadata().toString() + " with proposal : "
+                    + proposalNb);
+        }
         if (proposalNb == state.getActivePropose()) {
             state.incrAckCount();
             state.addAck(msg.getSenderHostIP());
-            logger.info("[LA] - incrementing ack count" + state.getAckCount() + " for slot " + slot);
+            if (Trace.ENABLED) {
+                logger.info("[LA] - incrementing ack count" + state.getAckCount() + " for slot " + slot);
+            }
             if (state.getAckCount() > destinations.size() / 2 && state.isActive()) {
                 state.setActive(false);
                 Proposal decidedProposal = new Proposal(state.getActivePropose(), state.getProposedValues(), slot);
@@ -192,15 +193,21 @@ public class LatticeAgreement implements Agreement, Subscriber<Message> {
 
     private void processNack(Message msg) {
         Proposal proposal = recoverProposal(msg);
-        logger.info("[LA] - Processing NACK : " + msg.getMetadata().toString() + " with proposal : "
-                + proposal.toString());
+        if (Trace.ENABLED) {
+            logger.info("[LA] - Processing NACK : " + msg.getMetadata().toString() + " with proposal : "
+                    + proposal.toString());
+        }
         LatticeState state = slots.get(proposal.getSlot());
         if (state == null) {
-            logger.info("[LA] - This state does not exist");
+            if (Trace.ENABLED) {
+                logger.info("[LA] - This state does not exist");
+            }
             return;
         }
         if (state.hasResponded(msg.getSenderHostIP())) {
-            logger.info("[LA] - Already responded to this proposal");
+            if (Trace.ENABLED) {
+                logger.info("[LA] - Already responded to this proposal");
+            }
             return;
         }
         if (proposal.getActivePropose() == state.getActivePropose()) {
@@ -209,6 +216,7 @@ public class LatticeAgreement implements Agreement, Subscriber<Message> {
             state.getProposedValues().addAll(proposal.getProposedValues());
             if (state.getNackCount() + state.getAckCount() > destinations.size() / 2 && state.isActive()) {
                 state.incrActivePropose();
+                nackRounds.increment();
                 state.resetAckCount();
                 state.resetNackCount();
                 Proposal newProposal = new Proposal(state.getActivePropose(), state.getProposedValues(),
@@ -219,19 +227,26 @@ public class LatticeAgreement implements Agreement, Subscriber<Message> {
         }
     }
 
+    /**
+     * Subscribed to both the best effort broadcast and the perfect link, which
+     * deliver on separate channels. A single subscription field cannot tell the
+     * two apart when requesting the next item, so every subscription is given
+     * unbounded demand.
+     */
     @Override
     public void onSubscribe(Subscription subscription) {
-        this.subscription = subscription;
-        subscription.request(1);
+        subscription.request(Long.MAX_VALUE);
     }
 
     @Override
     public void onNext(Message item) {
         if (item.getType() != MsgType.DATA) {
-            subscription.request(1);
             return;
         }
         Message m = unpack(item);
+        if (m == null) {
+            return;
+        }
         // logger.info("[LA] - Received message " + item.toString());
         switch (m.getType()) {
             case PROPOSAL:
@@ -246,7 +261,6 @@ public class LatticeAgreement implements Agreement, Subscriber<Message> {
             default:
                 break;
         }
-        subscription.request(1);
     }
 
     @Override
@@ -256,7 +270,9 @@ public class LatticeAgreement implements Agreement, Subscriber<Message> {
 
     @Override
     public void onComplete() {
-        logger.log(Level.INFO, "Completed");
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "Completed");
+        }
     }
 
 }
@@ -14,8 +14,9 @@ import cs451.Links.PerfectLink;
 import cs451.Links.UDPHost;
 import cs451.Models.HostIP;
 import cs451.Models.Message;
-import cs451.Models.Metadata;
 import cs451.Models.MsgType;
+import cs451.utils.Pipeline;
+import cs451.utils.Trace;
 
 /**
  * BestEffortBroadcast class provides a best-effort broadcast mechanism using a
@@ -34,25 +35,28 @@ public class BestEffortBroadcast implements Broadcaster, Subscriber<Message>, Pu
         this.perfectLink = new PerfectLink(host, executor);
         this.destinations = destinations;
         perfectLink.subscribe(this);
-        publisher = new SubmissionPublisher<Message>(executor, 256);
+        publisher = Pipeline.newPublisher(executor);
+        host.getMetrics().gauge("beb.lag", publisher::estimateMaximumLag);
         this.executor = executor;
-        logger.setLevel(Level.OFF);
+        logger.setLevel(Trace.LEVEL);
     }
 
     @Override
     public void broadcast(Message m) {
         for (HostIP dest : destinations) {
-            Metadata metadata = new Metadata(m.getType(), m.getSenderId(), dest.getId(), m.getSeqNum(),
-                    m.getSenderHostIP(), dest);
-            Message msg = new Message(metadata, m.getData());
-            logger.info("[BEB] - Sending message : " + msg.toString());
+            Message msg = m.withDestination(dest);
+            if (Trace.ENABLED) {
+                logger.info("[BEB] - Sending message : " + msg.toString());
+            }
             executor.submit(() -> perfectLink.send(msg, dest));
         }
     }
 
     @Override
     public void deliver(Message msg) {
-        logger.info("[BEB] - Delivering packet : " + msg.toString());
+        if (Trace.ENABLED) {
+            logger.info("[BEB] - Delivering packet : " + msg.toString());
+        }
         if (msg.getType() == MsgType.DATA) {
             publisher.submit(msg);
         }
@@ -77,7 +81,9 @@ public class BestEffortBroadcast implements Broadcaster, Subscriber<Message>, Pu
 
     @Override
     public void onComplete() {
-        logger.log(Level.INFO, "Completed");
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "Completed");
+        }
     }
 
     @Override
@@ -1,11 +1,8 @@
 package cs451.Broadcast;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.DatagramPacket;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -13,6 +10,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Flow.Subscriber;
 import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -20,9 +18,14 @@ import java.util.stream.Collectors;
 import cs451.Links.UDPHost;
 import cs451.Models.HostIP;
 import cs451.Models.Message;
+import cs451.Models.MessageCodec;
 import cs451.Models.Metadata;
 import cs451.Models.MsgType;
+import cs451.Models.PeerTable;
+import cs451.utils.Latency;
 import cs451.utils.Log;
+import cs451.utils.Metrics;
+import cs451.utils.Trace;
 
 /**
  * .
@@ -36,8 +39,9 @@ public class FIFOBroadcast implements Broadcaster, Subscriber<Message> {
 
     private Subscription subscription;
     private HostIP myHostIP;
-    private ConcurrentHashMap<HostIP, Set<Message>> past;
-    private ConcurrentHashMap<HostIP, Integer> next;
+    // past messages and next expected sequence number, by sender id
+    private Set<Message>[] past;
+    private int[] next;
     private ConcurrentHashMap<Message, Set<HostIP>> acked;
     private Set<Message> delivered;
     private Set<HostIP> destinations;
@@ -45,22 +49,28 @@ public class FIFOBroadcast implements Broadcaster, Subscriber<Message> {
     private UniformReliableBroadcast urb;
     private Logger logger = Logger.getLogger(FIFOBroadcast.class.getName());
     private boolean mustLog = false;
+    private final LongAdder deliveries;
 
     public FIFOBroadcast(UDPHost host, Set<HostIP> destinations, ExecutorService executor) {
         this.executor = executor;
         myHostIP = host.getHostIP();
-        past = new ConcurrentHashMap<HostIP, Set<Message>>();
-        next = new ConcurrentHashMap<HostIP, Integer>();
+        int capacity = PeerTable.directory().capacity();
+        @SuppressWarnings("unchecked")
+        Set<Message>[] sets = (Set<Message>[]) new Set<?>[capacity];
+        past = sets;
+        next = new int[capacity];
         acked = new ConcurrentHashMap<Message, Set<HostIP>>();
         delivered = new HashSet<Message>();
         this.destinations = destinations;
         for (HostIP dest : destinations) {
-            past.put(dest, new HashSet<Message>());
-            next.put(dest, 1);
+            past[dest.getId()] = new HashSet<Message>();
+            next[dest.getId()] = 1;
         }
         urb = new UniformReliableBroadcast(host, destinations, executor);
         urb.subscribe(this);
-        logger.setLevel(Level.OFF);
+        logger.setLevel(Trace.LEVEL);
+        deliveries = host.getMetrics().counter("fifo.delivered");
+        host.getMetrics().gauge("fifo.past", this::countPast);
     }
 
     public void activateLogging() {
@@ -69,66 +79,114 @@ public class FIFOBroadcast implements Broadcaster, Subscriber<Message> {
 
     @Override
     public void broadcast(Message m) {
+        m = Latency.stamp(m);
         Message preparedMsg = prepareMessage(m);
         executor.submit(() -> urb.broadcast(preparedMsg));
-        logger.info("[FIFO] - Broadcasting message " + m.toString());
+        if (Trace.ENABLED) {
+            logger.info("[FIFO] - Broadcasting message " + m.toString());
+        }
         if (mustLog) {
             String log = "b " + m.getSeqNum() + "\n";
             Log.logFile(log);
         }
-        past.get(m.getSenderHostIP()).add(m);
+        past[m.getSenderId()].add(m);
 
     }
 
     /**
      * Prepares a message to be sent by adding the past messages received from each
      * sender.
+     * Layout : number of hosts, then for each host its id, the number of past
+     * messages and the encoded messages, followed by the encoded message itself.
      * 
      * @param m the message to be sent
      * @return the prepared message
      */
     private Message prepareMessage(Message m) {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutputStream outputStream;
-        try {
-            outputStream = new ObjectOutputStream(bos);
-            outputStream.writeObject(past);
-            outputStream.writeObject(m);
-            outputStream.flush();
-            outputStream.close();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        byte[] data = bos.toByteArray();
-        return new Message(m.getMetadata(), data);
+        Message[][] snapshot = new Message[past.length][];
+        int nbHosts = 0;
+        int size = 4 + MessageCodec.encodedSize(m);
+        for (int id = 0; id < past.length; id++) {
+            if (past[id] == null) {
+                continue;
+            }
+            Message[] msgs = past[id].toArray(new Message[0]);
+            snapshot[id] = msgs;
+            nbHosts++;
+            size += 2 + 4;
+            for (Message msg : msgs) {
+                size += MessageCodec.encodedSize(msg);
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(nbHosts);
+        for (int id = 0; id < snapshot.length; id++) {
+            if (snapshot[id] == null) {
+                continue;
+            }
+            buffer.putShort((short) id);
+            buffer.putInt(snapshot[id].length);
+            for (Message msg : snapshot[id]) {
+                MessageCodec.encode(msg, buffer);
+            }
+        }
+        MessageCodec.encode(m, buffer);
+        return new Message(m.getMetadata(), buffer.array());
     }
 
     /**
      * Unpacks a message in the FIFO broadcast protocol.
-     * It retrieves the received message and the set of past messages received from
-     * each host.
+     * It retrieves the received message and the past messages received from
+     * each host, by host id. Returns null if one of them cannot be decoded.
      */
-    @SuppressWarnings("unchecked")
     private FIFOMessage unpackMessage(Message m) {
-        ByteArrayInputStream bis = new ByteArrayInputStream(m.getData());
-        ObjectInputStream inputStream;
-        Message receivedMessage = null;
-        ConcurrentHashMap<HostIP, Set<Message>> receivedPast = null;
-        try {
-            inputStream = new ObjectInputStream(bis);
-            receivedPast = (ConcurrentHashMap<HostIP, Set<Message>>) inputStream.readObject();
-            receivedMessage = (Message) inputStream.readObject();
-            inputStream.close();
-        } catch (Exception e) {
-            e.printStackTrace();
+        ByteBuffer buffer = ByteBuffer.wrap(m.getData());
+        Message[][] receivedPast = new Message[past.length][];
+        int nbHosts = buffer.getInt();
+        for (int i = 0; i < nbHosts; i++) {
+            int id = Short.toUnsignedInt(buffer.getShort());
+            int nbMsgs = buffer.getInt();
+            Message[] msgs = new Message[nbMsgs];
+            for (int j = 0; j < nbMsgs; j++) {
+                msgs[j] = MessageCodec.decode(buffer);
+                if (msgs[j] == null) {
+                    return null;
+                }
+            }
+            if (id < receivedPast.length) {
+                receivedPast[id] = msgs;
+            }
+        }
+        Message receivedMessage = MessageCodec.decode(buffer);
+        if (receivedMessage == null) {
+            return null;
         }
         return new FIFOMessage(receivedMessage, receivedPast);
 
     }
 
+    /**
+     * Returns the number of past messages carried by the broadcasts, those not
+     * acknowledged by every process yet. The sets are read without their lock,
+     * which is good enough for a gauge.
+     */
+    private long countPast() {
+        long count = 0;
+        for (Set<Message> messages : past) {
+            if (messages != null) {
+                count += messages.size();
+            }
+        }
+        return count;
+    }
+
     @Override
     public void deliver(Message receivedMessage) {
-        logger.info("[FIFO] - Delivering message " + receivedMessage.toString());
+        deliveries.increment();
+        Latency.record(Latency.FIFO, receivedMessage);
+        if (Trace.ENABLED) {
+            logger.info("[FIFO] - Delivering message " + receivedMessage.toString());
+        }
         if (mustLog) {
             String log = "d " + receivedMessage.getSenderId() + " " + receivedMessage.getSeqNum() + "\n";
             Log.logFile(log);
@@ -138,7 +196,9 @@ public class FIFOBroadcast implements Broadcaster, Subscriber<Message> {
             acked.get(receivedMessage).add(myHostIP);
             Metadata metadata = new Metadata(MsgType.ACK, myHostIP.getId(), 0, 0, myHostIP, null);
             Message ack = new Message(metadata, receivedMessage.toBytes());
-            logger.info("[FIFO] - Sending ACK " + ack.toString());
+            if (Trace.ENABLED) {
+                logger.info("[FIFO] - Sending ACK " + ack.toString());
+            }
             executor.submit(() -> urb.broadcast(ack));
         }
 
@@ -146,7 +206,9 @@ public class FIFOBroadcast implements Broadcaster, Subscriber<Message> {
 
     @Override
     public void onComplete() {
-        logger.log(Level.INFO, "Completed");
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "Completed");
+        }
     }
 
     @Override
@@ -157,7 +219,9 @@ public class FIFOBroadcast implements Broadcaster, Subscriber<Message> {
     @Override
     public void onNext(Message item) {
         if (item.getMetadata().getType() == MsgType.ACK) {
-            logger.info("[FIFO] - Received ACK " + item.toString());
+            if (Trace.ENABLED) {
+                logger.info("[FIFO] - Received ACK " + item.toString());
+            }
             processAck(item);
             subscription.request(1);
             return;
@@ -166,58 +230,76 @@ public class FIFOBroadcast implements Broadcaster, Subscriber<Message> {
         subscription.request(1);
     }
 
-    private void processMsg(Message item) {
+    // package-private for the JMH benchmarks
+    void processMsg(Message item) {
         // unpack message
         FIFOMessage fifoMessage = unpackMessage(item);
+        if (fifoMessage == null) {
+            return;
+        }
         Message receivedMessage = fifoMessage.getMessage();
-        logger.info("[FIFO] - Received message " + receivedMessage.toString());
-        ConcurrentHashMap<HostIP, Set<Message>> receivedPast = fifoMessage.getPast();
-        logger.info("[FIFO] - Received past " + receivedPast.toString());
+        if (Trace.ENABLED) {
+            logger.info("[FIFO] - Received message " + receivedMessage.toString());
+        }
+        Message[][] receivedPast = fifoMessage.getPast();
+        if (Trace.ENABLED) {
+            logger.info("[FIFO] - Received past " + Arrays.deepToString(receivedPast));
+        }
 
         if (!delivered.contains(receivedMessage)) {
             // deliver the received message
-            if (receivedMessage.getSeqNum() == next.get(receivedMessage.getSenderHostIP())) {
+            if (receivedMessage.getSeqNum() == next[receivedMessage.getSenderId()]) {
                 deliver(receivedMessage);
                 delivered.add(receivedMessage);
-                past.get(receivedMessage.getSenderHostIP()).add(receivedMessage);
-                next.put(receivedMessage.getSenderHostIP(), next.get(receivedMessage.getSenderHostIP()) + 1);
+                past[receivedMessage.getSenderId()].add(receivedMessage);
+                next[receivedMessage.getSenderId()]++;
             }
             // for each host, checks which messages from past can be delivered
-            for (HostIP src : receivedPast.keySet()) {
-                List<Message> toDeliver = new ArrayList<Message>();
-                toDeliver = receivedPast.get(src).stream().filter(msg -> msg.getSeqNum() >= next.get(src))
+            for (int src = 0; src < receivedPast.length; src++) {
+                if (receivedPast[src] == null || past[src] == null) {
+                    continue;
+                }
+                int expected = next[src];
+                List<Message> toDeliver = Arrays.stream(receivedPast[src]).filter(msg -> msg.getSeqNum() >= expected)
                         .sorted((m1, m2) -> m1.getSeqNum() - m2.getSeqNum()).collect(Collectors.toList());
-                logger.info("[FIFO] - toDeliver : " + toDeliver.toString());
+                if (Trace.ENABLED) {
+                    logger.info("[FIFO] - toDeliver : " + toDeliver.toString());
+                }
                 // for each possible message from past, checks if it should be delivered
                 for (Message msg : toDeliver) {
-                    if (!delivered.contains(msg) && msg.getSeqNum() == next.get(src)) {
-                        logger.info("[FIFO] - Delivering message from past " + msg.toString());
-                        logger.info("[FIFO] - Next : " + next.toString());
+                    if (!delivered.contains(msg) && msg.getSeqNum() == next[src]) {
+                        if (Trace.ENABLED) {
+                            logger.info("[FIFO] - Delivering message from past " + msg.toString());
+                            logger.info("[FIFO] - Next : " + Arrays.toString(next));
+                        }
                         deliver(msg);
                         // update
                         delivered.add(msg);
-                        past.get(msg.getSenderHostIP()).add(msg);
-                        next.put(src, next.get(src) + 1);
+                        past[msg.getSenderId()].add(msg);
+                        next[src]++;
                     }
                 }
 
             }
             // deliver the received message
-            if (receivedMessage.getSeqNum() == next.get(receivedMessage.getSenderHostIP())) {
+            if (receivedMessage.getSeqNum() == next[receivedMessage.getSenderId()]) {
                 deliver(receivedMessage);
                 delivered.add(receivedMessage);
-                past.get(receivedMessage.getSenderHostIP()).add(receivedMessage);
-                next.put(receivedMessage.getSenderHostIP(), next.get(receivedMessage.getSenderHostIP()) + 1);
+                past[receivedMessage.getSenderId()].add(receivedMessage);
+                next[receivedMessage.getSenderId()]++;
             }
         }
     }
 
     private void processAck(Message item) {
         Message receivedMessage = Message.fromBytes(item.getData());
+        if (receivedMessage == null) {
+            return;
+        }
         acked.putIfAbsent(receivedMessage, new HashSet<HostIP>());
         acked.get(receivedMessage).add(item.getSenderHostIP());
         if (acked.get(receivedMessage).containsAll(destinations)) {
-            past.get(receivedMessage.getSenderHostIP()).remove(receivedMessage);
+            past[receivedMessage.getSenderId()].remove(receivedMessage);
         }
     }
 
@@ -229,9 +311,9 @@ public class FIFOBroadcast implements Broadcaster, Subscriber<Message> {
 
     private class FIFOMessage {
         private Message message;
-        private ConcurrentHashMap<HostIP, Set<Message>> past;
+        private Message[][] past;
 
-        public FIFOMessage(Message message, ConcurrentHashMap<HostIP, Set<Message>> past) {
+        public FIFOMessage(Message message, Message[][] past) {
             this.message = message;
             this.past = past;
         }
@@ -240,7 +322,7 @@ public class FIFOBroadcast implements Broadcaster, Subscriber<Message> {
             return message;
         }
 
-        public ConcurrentHashMap<HostIP, Set<Message>> getPast() {
+        public Message[][] getPast() {
             return past;
         }
     }
@@ -2,6 +2,7 @@ package cs451.Broadcast;
 
 import java.net.DatagramPacket;
 import java.net.InetAddress;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
@@ -11,6 +12,7 @@ import java.util.concurrent.SubmissionPublisher;
 import java.util.concurrent.Flow.Publisher;
 import java.util.concurrent.Flow.Subscriber;
 import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
@@ -21,7 +23,12 @@ import cs451.Models.HostIP;
 import cs451.Models.Message;
 import cs451.Models.Metadata;
 import cs451.Models.MsgType;
+import cs451.Models.PeerTable;
+import cs451.utils.Latency;
 import cs451.utils.Log;
+import cs451.utils.Metrics;
+import cs451.utils.Pipeline;
+import cs451.utils.Trace;
 
 /**
  * .
@@ -42,12 +49,15 @@ public class UniformReliableBroadcast implements Broadcaster, Subscriber<Message
     private Set<HostIP> destinations;
     private Set<Message> delivered;
     private Lock deliverdLock = new ReentrantLock();
-    private ConcurrentHashMap<HostIP, Set<Message>> forward;
+    // messages forwarded, by original sender id
+    private Set<Message>[] forward;
     private Lock forwardLock = new ReentrantLock();
     private ConcurrentHashMap<Message, Set<HostIP>> receivedMsgFromMap;
     private Lock msgLock = new ReentrantLock();
     private boolean mustLog = false;
     private boolean logTimestamp = false;
+    private final LongAdder forwards;
+    private final LongAdder deliveries;
 
     public UniformReliableBroadcast(UDPHost host, Set<HostIP> destinations, ExecutorService executor) {
         beb = new BestEffortBroadcast(host, destinations, executor);
@@ -55,16 +65,24 @@ public class UniformReliableBroadcast implements Broadcaster, Subscriber<Message
         beb.subscribe(this);
         this.executor = executor;
         this.destinations = destinations;
-        publisher = new SubmissionPublisher<Message>(executor, 256);
+        publisher = Pipeline.newPublisher(executor);
         delivered = new HashSet<Message>();
         receivedMsgFromMap = new ConcurrentHashMap<Message, Set<HostIP>>();
-        forward = new ConcurrentHashMap<HostIP, Set<Message>>();
+        @SuppressWarnings("unchecked")
+        Set<Message>[] sets = (Set<Message>[]) new Set<?>[PeerTable.directory().capacity()];
+        forward = sets;
         for (HostIP dest : destinations) {
-            forward.put(dest, new HashSet<Message>());
+            forward[dest.getId()] = new HashSet<Message>();
         }
 
         // pfd = new PerfectFailureDetector(host, destinations, executor);
-        logger.setLevel(Level.OFF);
+        logger.setLevel(Trace.LEVEL);
+        // messages seen but not delivered yet, waiting for a majority
+        Metrics metrics = host.getMetrics();
+        forwards = metrics.counter("urb.forwarded");
+        deliveries = metrics.counter("urb.delivered");
+        metrics.gauge("urb.pending", () -> receivedMsgFromMap.size() - delivered.size());
+        metrics.gauge("urb.lag", publisher::estimateMaximumLag);
 
     }
 
@@ -79,6 +97,8 @@ public class UniformReliableBroadcast implements Broadcaster, Subscriber<Message
     @Override
     public void broadcast(Message m) {
         // pfd.start();
+        // the origin time travels in the header of the wrapped message
+        m = Latency.stamp(m);
         // adapt metadata for broadcast
         Metadata metadata = new Metadata(MsgType.DATA, myHostIP.getId(), m.getSenderId(), m.getSeqNum(),
                 myHostIP, m.getSenderHostIP());
@@ -98,7 +118,9 @@ public class UniformReliableBroadcast implements Broadcaster, Subscriber<Message
     @Override
     public void deliver(Message msgUnpack) {
         // unpacks message
-        logger.warning("[URB] -  Delivering message " + msgUnpack.toString());
+        if (Trace.ENABLED) {
+            logger.warning("[URB] -  Delivering message " + msgUnpack.toString());
+        }
         if (mustLog) {
             String log = "d " + msgUnpack.getSenderId() + " "
                     + msgUnpack.getSeqNum() + "\n";
@@ -125,10 +147,16 @@ public class UniformReliableBroadcast implements Broadcaster, Subscriber<Message
 
     }
 
-    private void process(Message item) {
+    // package-private for the JMH benchmarks
+    void process(Message item) {
         // unpacks message
         Message msgUnpack = Message.fromBytes(item.getData());
-        logger.info("[URB] - unpacked : " + msgUnpack.toString() + " from " + item.getSenderHostIP().toString());
+        if (msgUnpack == null) {
+            return;
+        }
+        if (Trace.ENABLED) {
+            logger.info("[URB] - unpacked : " + msgUnpack.toString() + " from " + item.getSenderHostIP().toString());
+        }
 
         // lock
 
@@ -139,21 +167,24 @@ public class UniformReliableBroadcast implements Broadcaster, Subscriber<Message
         msgLock.unlock();
         // unlock
 
-        logger.info("[URB] -    receivedMsgFromMap : " + receivedMsgFromMap.toString());
-        logger.info("[URB] -  forward : " + forward.toString());
+        if (Trace.ENABLED) {
+            logger.info("[URB] -    receivedMsgFromMap : " + receivedMsgFromMap.toString());
+            logger.info("[URB] -  forward : " + Arrays.toString(forward));
+        }
 
         // adds message to the set of messages to forward if it is not already in it and
         // broadcasts it
         forwardLock.lock();
-        if (!(forward.get(msgUnpack.getSenderHostIP()).contains(msgUnpack))) {
-            forward.get(msgUnpack.getSenderHostIP()).add(msgUnpack);
-
-            logger.info("[URB] -  adding to forward" + forward.toString());
+        if (forward[msgUnpack.getSenderId()].add(msgUnpack)) {
+            if (Trace.ENABLED) {
+                logger.info("[URB] -  adding to forward" + Arrays.toString(forward));
+            }
             Metadata metadata = new Metadata(MsgType.DATA, myHostIP.getId(), msgUnpack.getSenderId(),
                     msgUnpack.getSeqNum(),
                     myHostIP, msgUnpack.getSenderHostIP());
             Message msg = new Message(metadata, msgUnpack.toBytes());
             beb.broadcast(msg);
+            forwards.increment();
         }
         forwardLock.unlock();
         checkDeliver(msgUnpack);
@@ -166,12 +197,17 @@ public class UniformReliableBroadcast implements Broadcaster, Subscriber<Message
      * @param m    message to check
      * @param item datagram packet containing the message
      */
-    private void checkDeliver(Message m) {
-        logger.info("[URB] - checking if message can be delivered " + m.toString() + " "
-                + receivedMsgFromMap.get(m).toString() + " " + destinations.toString() + " " + delivered.toString());
+    void checkDeliver(Message m) {
+        if (Trace.ENABLED) {
+            logger.info("[URB] - checking if message can be delivered " + m.toString() + " "
+                    + receivedMsgFromMap.get(m).toString() + " " + destinations.toString() + " "
+                    + delivered.toString());
+        }
         deliverdLock.lock();
         if (!delivered.contains(m) && containsMajority(m)) {
             delivered.add(m);
+            deliveries.increment();
+            Latency.record(Latency.URB, m);
             deliver(m);
         }
         deliverdLock.unlock();
@@ -188,7 +224,9 @@ public class UniformReliableBroadcast implements Broadcaster, Subscriber<Message
 
     @Override
     public void onComplete() {
-        logger.log(Level.INFO, "Completed");
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "Completed");
+        }
     }
 
     @Override
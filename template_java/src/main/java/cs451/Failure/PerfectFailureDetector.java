@@ -1,14 +1,15 @@
 package cs451.Failure;
 
 import java.net.DatagramPacket;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.concurrent.Flow.Subscriber;
@@ -20,6 +21,9 @@ import cs451.Models.HostIP;
 import cs451.Models.Message;
 import cs451.Models.Metadata;
 import cs451.Models.MsgType;
+import cs451.Models.PeerTable;
+import cs451.utils.Execution;
+import cs451.utils.Trace;
 
 /**
  * The PerfectFailureDetector class implements the FailureDetector interface and
@@ -34,13 +38,15 @@ public class PerfectFailureDetector implements FailureDetector, Subscriber<Messa
     private Set<HostIP> endPoints;
     private HostIP myHostIP;
     private Subscription subscription;
-    private ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    private ConcurrentHashMap<HostIP, ScheduledFuture<?>> sendProcess;
-    private ConcurrentHashMap<HostIP, ScheduledFuture<?>> failureMonitor;
-    private ConcurrentHashMap<HostIP, Set<Integer>> waitForAck;
-    private ConcurrentHashMap<HostIP, Set<Integer>> receivedAck;
-    private ConcurrentHashMap<HostIP, Long> timeoutMap;
-    private Set<HostIP> suspected;
+    private ScheduledExecutorService scheduler = Execution.newScheduler();
+    // per-host state, indexed by process id
+    private AtomicReferenceArray<ScheduledFuture<?>> sendProcess;
+    private AtomicReferenceArray<ScheduledFuture<?>> failureMonitor;
+    private Set<Long>[] waitForAck;
+    private Set<Long>[] receivedAck;
+    private AtomicLongArray timeouts;
+    // only accessed by the scheduler thread
+    private BitSet suspected;
     private final TimeUnit TIME_UNIT = TimeUnit.MILLISECONDS;
     private final long BASIC_TIMEOUT = 5000;
     private Logger logger = Logger.getLogger(PerfectFailureDetector.class.getName());
@@ -51,22 +57,28 @@ public class PerfectFailureDetector implements FailureDetector, Subscriber<Messa
         this.executor = executor;
         this.endPoints = endPoints;
         this.myHostIP = host.getHostIP();
-        this.failureMonitor = new ConcurrentHashMap<HostIP, ScheduledFuture<?>>();
-        this.timeoutMap = new ConcurrentHashMap<HostIP, Long>();
-        this.waitForAck = new ConcurrentHashMap<HostIP, Set<Integer>>();
-        this.receivedAck = new ConcurrentHashMap<HostIP, Set<Integer>>();
-        this.sendProcess = new ConcurrentHashMap<HostIP, ScheduledFuture<?>>();
-        this.suspected = new HashSet<HostIP>();
-        logger.setLevel(Level.INFO);
+        int capacity = PeerTable.directory().capacity();
+        this.failureMonitor = new AtomicReferenceArray<ScheduledFuture<?>>(capacity);
+        this.timeouts = new AtomicLongArray(capacity);
+        this.waitForAck = newSets(capacity);
+        this.receivedAck = newSets(capacity);
+        this.sendProcess = new AtomicReferenceArray<ScheduledFuture<?>>(capacity);
+        this.suspected = new BitSet(capacity);
+        logger.setLevel(Trace.LEVEL);
 
         for (HostIP hostIP : endPoints) {
-            timeoutMap.put(hostIP, BASIC_TIMEOUT);
-            waitForAck.put(hostIP, new HashSet<Integer>());
-            receivedAck.put(hostIP, new HashSet<Integer>());
+            timeouts.set(hostIP.getId(), BASIC_TIMEOUT);
+            waitForAck[hostIP.getId()] = new HashSet<Long>();
+            receivedAck[hostIP.getId()] = new HashSet<Long>();
         }
 
     }
 
+    @SuppressWarnings("unchecked")
+    private static Set<Long>[] newSets(int capacity) {
+        return (Set<Long>[]) new Set<?>[capacity];
+    }
+
     /**
      * Starts the perfect failure detector by scheduling heartbeat sending and
      * monitoring tasks for each host.
@@ -75,14 +87,15 @@ public class PerfectFailureDetector implements FailureDetector, Subscriber<Messa
     public void start() {
         for (HostIP hostIP : endPoints) {
             if (hostIP.getId() != myHostIP.getId()) {
+                long timeout = timeouts.get(hostIP.getId());
                 ScheduledFuture<?> heartbeatSend = scheduler.scheduleAtFixedRate(() -> {
                     sendHeartbeat(hostIP);
-                }, 0, timeoutMap.get(hostIP), TIME_UNIT);
-                sendProcess.put(hostIP, heartbeatSend);
+                }, 0, timeout, TIME_UNIT);
+                sendProcess.set(hostIP.getId(), heartbeatSend);
                 ScheduledFuture<?> heartbeatMonitor = scheduler.scheduleAtFixedRate(() -> {
                     monitorHearbeat(hostIP);
-                }, timeoutMap.get(hostIP), timeoutMap.get(hostIP), TIME_UNIT);
-                failureMonitor.put(hostIP, heartbeatMonitor);
+                }, timeout, timeout, TIME_UNIT);
+                failureMonitor.set(hostIP.getId(), heartbeatMonitor);
             }
 
         }
@@ -94,12 +107,14 @@ public class PerfectFailureDetector implements FailureDetector, Subscriber<Messa
      * @param hostIP the host IP to send the heartbeat to
      */
     private void sendHeartbeat(HostIP hostIP) {
-        logger.log(Level.INFO, "[PFD] - Sending heartbeat to " + hostIP.getId());
-        Metadata metadata = new Metadata(MsgType.DATA, myHostIP.getId(), hostIP.getId(), 0, myHostIP,
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "[PFD] - Sending heartbeat to " + hostIP.getId());
+        }
+        Metadata metadata = new Metadata(MsgType.HEARTBEAT, myHostIP.getId(), hostIP.getId(), 0, myHostIP,
                 hostIP);
         Message msg = new Message(metadata, "heartbeat".getBytes());
         pl.send(msg, hostIP);
-        waitForAck.get(hostIP).add(msg.getId());
+        waitForAck[hostIP.getId()].add(msg.getId());
     }
 
     /**
@@ -113,27 +128,38 @@ public class PerfectFailureDetector implements FailureDetector, Subscriber<Messa
      * @param hostIP The host IP to monitor the heartbeat from.
      */
     private void monitorHearbeat(HostIP hostIP) {
-        logger.log(Level.INFO, "[PFD] - Checking heartbeat from " + hostIP.getId());
-        Set<Integer> ackIntersect = new HashSet<Integer>(waitForAck.get(hostIP));
-        logger.info("[PFD] - wait for Ack " + ackIntersect.toString());
-        logger.info("[PFD] - received Ack " + receivedAck.get(hostIP).toString());
-        ackIntersect.retainAll(receivedAck.get(hostIP));
-        logger.info("[PFD] - intersect " + ackIntersect.toString());
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "[PFD] - Checking heartbeat from " + hostIP.getId());
+        }
+        int id = hostIP.getId();
+        Set<Long> ackIntersect = new HashSet<Long>(waitForAck[id]);
+        if (Trace.ENABLED) {
+            logger.info("[PFD] - wait for Ack " + ackIntersect.toString());
+            logger.info("[PFD] - received Ack " + receivedAck[id].toString());
+        }
+        ackIntersect.retainAll(receivedAck[id]);
+        if (Trace.ENABLED) {
+            logger.info("[PFD] - intersect " + ackIntersect.toString());
+        }
         if (ackIntersect.size() != 0) {
-            for (Integer id : ackIntersect) {
-                waitForAck.get(hostIP).remove(id);
-                receivedAck.get(hostIP).remove(id);
+            for (Long ackedId : ackIntersect) {
+                waitForAck[id].remove(ackedId);
+                receivedAck[id].remove(ackedId);
             }
-            if (suspected.contains(hostIP)) {
-                suspected.remove(hostIP);
-                timeoutMap.put(hostIP, timeoutMap.get(hostIP) * 2);
+            if (suspected.get(id)) {
+                suspected.clear(id);
+                timeouts.set(id, timeouts.get(id) * 2);
                 scheduleHeartbeat(hostIP);
-                logger.info("[PFD] - No longer suspected " + suspected.toString());
-                logger.info("[PFD] - Timeout for " + hostIP.getId() + " is " + timeoutMap.get(hostIP));
+                if (Trace.ENABLED) {
+                    logger.info("[PFD] - No longer suspected " + suspected.toString());
+                    logger.info("[PFD] - Timeout for " + id + " is " + timeouts.get(id));
+                }
             }
         } else {
-            suspected.add(hostIP);
-            logger.info("[PFD] - Suspected " + suspected.toString());
+            suspected.set(id);
+            if (Trace.ENABLED) {
+                logger.info("[PFD] - Suspected " + suspected.toString());
+            }
         }
 
     }
@@ -144,16 +170,18 @@ public class PerfectFailureDetector implements FailureDetector, Subscriber<Messa
      * @param hostIP The IP address of the host.
      */
     private void scheduleHeartbeat(HostIP hostIP) {
-        sendProcess.get(hostIP).cancel(false);
+        int id = hostIP.getId();
+        long timeout = timeouts.get(id);
+        sendProcess.get(id).cancel(false);
         ScheduledFuture<?> heartbeatSend = scheduler.scheduleAtFixedRate(() -> {
             sendHeartbeat(hostIP);
-        }, timeoutMap.get(hostIP), timeoutMap.get(hostIP), TIME_UNIT);
-        sendProcess.put(hostIP, heartbeatSend);
-        failureMonitor.get(hostIP).cancel(false);
+        }, timeout, timeout, TIME_UNIT);
+        sendProcess.set(id, heartbeatSend);
+        failureMonitor.get(id).cancel(false);
         ScheduledFuture<?> heartbeatMonitor = scheduler.scheduleAtFixedRate(() -> {
             monitorHearbeat(hostIP);
-        }, 2 * timeoutMap.get(hostIP), timeoutMap.get(hostIP), TIME_UNIT);
-        failureMonitor.put(hostIP, heartbeatMonitor);
+        }, 2 * timeout, timeout, TIME_UNIT);
+        failureMonitor.set(id, heartbeatMonitor);
     }
 
     /**
@@ -164,8 +192,8 @@ public class PerfectFailureDetector implements FailureDetector, Subscriber<Messa
     public void stop() {
         for (HostIP hostIP : endPoints) {
             if (hostIP.getId() != myHostIP.getId()) {
-                sendProcess.get(hostIP).cancel(true);
-                failureMonitor.get(hostIP).cancel(true);
+                sendProcess.get(hostIP.getId()).cancel(true);
+                failureMonitor.get(hostIP.getId()).cancel(true);
             }
         }
     }
@@ -183,26 +211,33 @@ public class PerfectFailureDetector implements FailureDetector, Subscriber<Messa
     }
 
     /**
-     * This method is called when a new DatagramPacket is received.
-     * It processes the received message and updates the necessary data structures.
-     * If the received message is an ACK, it adds the acknowledged ID to the
+     * This method is called when a new message is received.
+     * A heartbeat is answered with a HEARTBEAT_ACK carrying its id. A
+     * HEARTBEAT_ACK for a heartbeat we are waiting for is added to the
      * receivedAck set.
-     * It also logs the received ACK and heartbeat information.
      * Finally, it requests one more item from the subscription.
      *
-     * @param item The received DatagramPacket.
+     * @param item The received message.
      */
     @Override
     public void onNext(Message item) {
-        Message msg = Message.fromBytes(item.getData());
-        if (msg.getType() == MsgType.ACK) {
-            Set<Integer> waitForAckSet = waitForAck.get(msg.getSenderHostIP());
-            logger.info(waitForAckSet.toString());
-            if (waitForAckSet.contains(msg.getAckedId()))
-                receivedAck.get(msg.getSenderHostIP()).add(msg.getAckedId());
-            logger.info("[PFD] - Received ack for " + msg.getSenderId() + " : "
-                    + receivedAck.get(msg.getSenderHostIP()).toString());
-            logger.log(Level.INFO, "[PFD] - Received heartbeat ack from " + msg.getSenderHostIP());
+        if (item.getType() == MsgType.HEARTBEAT) {
+            HostIP sender = item.getSenderHostIP();
+            Metadata metadata = new Metadata(MsgType.HEARTBEAT_ACK, myHostIP.getId(), sender.getId(), 0, myHostIP,
+                    sender);
+            pl.send(new Message(metadata, item.ackPayload()), sender);
+        } else if (item.getType() == MsgType.HEARTBEAT_ACK) {
+            Set<Long> waitForAckSet = waitForAck[item.getSenderId()];
+            if (Trace.ENABLED) {
+                logger.info(waitForAckSet.toString());
+            }
+            if (waitForAckSet.contains(item.getAckedId()))
+                receivedAck[item.getSenderId()].add(item.getAckedId());
+            if (Trace.ENABLED) {
+                logger.info("[PFD] - Received ack for " + item.getSenderId() + " : "
+                        + receivedAck[item.getSenderId()].toString());
+                logger.log(Level.INFO, "[PFD] - Received heartbeat ack from " + item.getSenderHostIP());
+            }
         }
         subscription.request(1);
 
@@ -215,6 +250,8 @@ public class PerfectFailureDetector implements FailureDetector, Subscriber<Messa
 
     @Override
     public void onComplete() {
-        logger.log(Level.INFO, "Completed");
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "Completed");
+        }
     }
 }
@@ -0,0 +1,72 @@
+package cs451.Links;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of fixed-size byte arrays, used to receive datagrams without
+ * allocating a new buffer for every packet.
+ * When the pool is empty a fresh buffer is allocated and the event is counted
+ * as an exhaustion. Buffers released while the pool is full are dropped and
+ * left to the garbage collector.
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+    private final ArrayBlockingQueue<byte[]> buffers;
+    private final LongAdder exhaustions = new LongAdder();
+
+    /**
+     * Creates a pool holding up to capacity buffers, all allocated upfront.
+     *
+     * @param capacity   maximum number of idle buffers kept by the pool
+     * @param bufferSize size of each buffer in bytes
+     */
+    public BufferPool(int capacity, int bufferSize) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<byte[]>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            buffers.offer(new byte[bufferSize]);
+        }
+    }
+
+    /**
+     * Takes a buffer from the pool, allocating a new one if the pool is empty.
+     *
+     * @return a buffer of {@link #getBufferSize()} bytes
+     */
+    public byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        if (buffer == null) {
+            exhaustions.increment();
+            buffer = new byte[bufferSize];
+        }
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer back to the pool.
+     *
+     * @param buffer a buffer previously obtained from {@link #acquire()}
+     */
+    public void release(byte[] buffer) {
+        if (buffer.length == bufferSize) {
+            buffers.offer(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns the number of times a buffer had to be allocated because the pool
+     * was empty.
+     *
+     * @return the number of exhaustion events since the pool was created
+     */
+    public long getExhaustionCount() {
+        return exhaustions.sum();
+    }
+
+}
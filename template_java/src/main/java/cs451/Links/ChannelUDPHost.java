@@ -0,0 +1,332 @@
+package cs451.Links;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import cs451.Models.HostIP;
+import cs451.Models.Message;
+import cs451.Models.MessageCodec;
+import cs451.Parser.Host;
+import cs451.utils.Metrics;
+import cs451.utils.Pipeline;
+import cs451.utils.Trace;
+
+/**
+ * Host built on a non-blocking java.nio.channels.DatagramChannel.
+ * A single selector loop running on the executor handles both reads and
+ * writes, reading into a direct buffer that is reused for every datagram.
+ * Sends are attempted directly from the calling thread; when the socket send
+ * buffer is full the datagram is queued and written by the loop once the
+ * channel becomes writable, so callers never block on the socket.
+ */
+public class ChannelUDPHost implements UDPHost {
+
+    private static final int MAX_PKT_SIZE = 65535;
+    // datagrams waiting for the channel to become writable, beyond this they are
+    // dropped as the network would
+    private static final int MAX_PENDING_WRITES = 4096;
+    private DatagramChannel channel;
+    private Selector selector;
+    private SelectionKey key;
+    private SubmissionPublisher<Message> publisher;
+    private final Logger logger = Logger.getLogger(ChannelUDPHost.class.getName());
+    private HostIP hostIP;
+
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(MAX_PKT_SIZE);
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(MAX_PKT_SIZE);
+    private final ConcurrentLinkedQueue<PendingWrite> pendingWrites = new ConcurrentLinkedQueue<PendingWrite>();
+    private final AtomicInteger nbPendingWrites = new AtomicInteger(0);
+    private final LongAdder droppedWrites = new LongAdder();
+    private BufferPool receivePool;
+    private ReceiveDispatcher dispatcher;
+
+    private AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicInteger channels = new AtomicInteger(0);
+    private final Metrics metrics = new Metrics();
+
+    private ExecutorService executor;
+
+    /**
+     * Creates a host with a given port number and IP address.
+     *
+     * @param host     Host object containing port number, IP address and id.
+     * @param executor ExecutorService to run the selector loop.
+     */
+    public ChannelUDPHost(Host host, ExecutorService executor) {
+        if (host.getPort() < 0 || host.getPort() > 65535) {
+            System.err.println("Port number must be between 0 and 65535!");
+            return;
+        }
+
+        InetAddress address;
+
+        try {
+            address = InetAddress.getByName(host.getIp());
+        } catch (UnknownHostException e) {
+            System.err.println("IP address is not valid!");
+            return;
+        } catch (SecurityException s) {
+            System.err.println("Cannot resolve address, SecurityException");
+            return;
+        }
+
+        try {
+            channel = DatagramChannel.open();
+            channel.bind(new InetSocketAddress(address, host.getPort()));
+            channel.configureBlocking(false);
+            selector = Selector.open();
+            key = channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        } catch (SecurityException s) {
+            System.err.println("Cannot open channel, SecurityException");
+            return;
+        }
+        this.executor = executor;
+        publisher = Pipeline.newPublisher(executor);
+        int workers = ReceiveDispatcher.workers();
+        if (workers > 0) {
+            receivePool = new BufferPool(ReceiveDispatcher.poolCapacity(workers), MAX_PKT_SIZE);
+        }
+        dispatcher = new ReceiveDispatcher(workers, receivePool, publisher, metrics);
+        hostIP = HostIP.of(host);
+        running.set(true);
+        logger.setLevel(Trace.LEVEL);
+    }
+
+    /**
+     * Sends an encoded message to the given destination without blocking.
+     * If the socket cannot take the datagram right away, a copy is queued and
+     * written by the selector loop.
+     *
+     * @param buffer buffer holding the encoded message between its position and
+     *               limit.
+     * @param dest   destination of the message.
+     */
+    @Override
+    public void send(ByteBuffer buffer, HostIP dest) {
+        SocketAddress target = dest.getSocketAddress();
+        if (pendingWrites.isEmpty()) {
+            try {
+                if (channel.send(buffer, target) > 0) {
+                    return;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+        if (nbPendingWrites.incrementAndGet() > MAX_PENDING_WRITES) {
+            nbPendingWrites.decrementAndGet();
+            droppedWrites.increment();
+            return;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+        copy.put(buffer);
+        copy.flip();
+        pendingWrites.add(new PendingWrite(copy, target));
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "Send buffer full, queued packet to " + dest);
+        }
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        selector.wakeup();
+    }
+
+    /**
+     * Starts the selector loop, reading incoming datagrams and flushing queued
+     * writes whenever the channel is ready.
+     */
+    @Override
+    public void receive() {
+        executor.submit(() -> {
+            while (running.get()) {
+                try {
+                    selector.select();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey selected = keys.next();
+                        keys.remove();
+                        if (selected.isReadable()) {
+                            read();
+                        }
+                        if (selected.isValid() && selected.isWritable()) {
+                            write();
+                        }
+                    }
+                } catch (ClosedSelectorException e) {
+                    return;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return;
+                }
+            }
+            return;
+        });
+    }
+
+    /**
+     * Reads and publishes every datagram currently available on the channel.
+     * When the dispatcher has workers, the datagram is copied out of the
+     * direct buffer into a pooled buffer handed to the worker owning the sender.
+     */
+    private void read() throws IOException {
+        while (true) {
+            receiveBuffer.clear();
+            SocketAddress from = channel.receive(receiveBuffer);
+            if (from == null) {
+                return;
+            }
+            receiveBuffer.flip();
+            if (dispatcher.isSharded()) {
+                int length = receiveBuffer.remaining();
+                byte[] buf = receivePool.acquire();
+                receiveBuffer.get(buf, 0, length);
+                dispatcher.dispatch(buf, length);
+                continue;
+            }
+            Message msg = MessageCodec.decode(receiveBuffer);
+            if (msg == null) {
+                if (Trace.ENABLED) {
+                    logger.log(Level.WARNING, "Dropping malformed packet from " + from);
+                }
+                continue;
+            }
+            publisher.submit(msg);
+        }
+    }
+
+    /**
+     * Writes queued datagrams until the queue is empty or the socket send buffer
+     * is full again.
+     */
+    private void write() throws IOException {
+        PendingWrite pending;
+        while ((pending = pendingWrites.peek()) != null) {
+            sendBuffer.clear();
+            sendBuffer.put(pending.data.duplicate());
+            sendBuffer.flip();
+            if (channel.send(sendBuffer, pending.target) == 0) {
+                return;
+            }
+            pendingWrites.poll();
+            nbPendingWrites.decrementAndGet();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        // a sender may have queued a write between the last poll and the change of
+        // interest, in which case it also re-enabled OP_WRITE and woke the selector
+        if (!pendingWrites.isEmpty()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Stops the host.
+     */
+    @Override
+    public void stop() {
+        running.set(false);
+        dispatcher.stop();
+        try {
+            selector.close();
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the port number of the host.
+     *
+     * @return Port number of the host.
+     */
+    @Override
+    public int getPort() {
+        return channel.socket().getLocalPort();
+    }
+
+    /**
+     * Returns the IP address of the host.
+     *
+     * @return IP address of the host.
+     */
+    @Override
+    public HostIP getHostIP() {
+        return hostIP;
+    }
+
+    /**
+     * Returns the number of times a buffer had to be allocated to hand a datagram
+     * to a receive worker. Without workers the channel host reads into a single
+     * direct buffer and never runs out of receive buffers.
+     *
+     * @return number of receive buffer pool exhaustion events.
+     */
+    @Override
+    public long getPoolExhaustions() {
+        return receivePool == null ? 0 : receivePool.getExhaustionCount();
+    }
+
+    /**
+     * Returns the number of datagrams dropped because too many writes were
+     * already waiting for the channel.
+     *
+     * @return number of dropped datagrams.
+     */
+    public long getDroppedWrites() {
+        return droppedWrites.sum();
+    }
+
+    @Override
+    public List<RingStats> getReceiveRingStats() {
+        return dispatcher.getRingStats();
+    }
+
+    @Override
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public int openChannel() {
+        return channels.getAndIncrement();
+    }
+
+    /**
+     * Subscribes a subscriber to the publisher.
+     */
+    @Override
+    public void subscribe(Subscriber<? super Message> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    private static class PendingWrite {
+        private final ByteBuffer data;
+        private final SocketAddress target;
+
+        public PendingWrite(ByteBuffer data, SocketAddress target) {
+            this.data = data;
+            this.target = target;
+        }
+    }
+
+}
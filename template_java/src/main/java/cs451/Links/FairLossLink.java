@@ -1,23 +1,39 @@
 package cs451.Links;
 
-import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Flow.Publisher;
 import java.util.concurrent.Flow.Subscriber;
 import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import cs451.Models.HostIP;
 import cs451.Models.Message;
+import cs451.Models.MessageCodec;
+import cs451.Models.MsgType;
+import cs451.Models.PeerTable;
+import cs451.utils.Execution;
+import cs451.utils.Options;
+import cs451.utils.Pipeline;
+import cs451.utils.Trace;
 
 /*
- * Class implementing a fair loss link. 
+ * Class implementing a fair loss link.
  * Properties of fair loss links should be satisfied.
  * - FL1 : Fair-loss : If a message is sent infinitely often then m is deliered infinitely often
  * - FL2 : Finite duplication : If a message is sent a finite number of times then m is delivered a finite number of times
  * - FL3 : No creation : No message is delivered unless it was sent
+ *
+ * Each link instance gets its own channel on the host and ignores the messages
+ * of other channels.
+ * Messages going to the same destination are coalesced into BATCH datagrams of
+ * at most cs451.batchBytes bytes, sent when full or cs451.batchDelayMicros after
+ * the first message was added. Received batches are split back into messages.
  */
 public class FairLossLink implements Link, Subscriber<Message>, Publisher<Message> {
 
@@ -25,6 +41,12 @@ public class FairLossLink implements Link, Subscriber<Message>, Publisher<Messag
     private final Logger logger = Logger.getLogger(FairLossLink.class.getName());
     private final SubmissionPublisher<Message> publisher;
     private final UDPHost host;
+    private final int channel;
+    private final int batchBytes;
+    private final long batchDelayMicros;
+    // pending batch of each destination, by process id, created on first use
+    private final AtomicReferenceArray<Batch> batches;
+    private ScheduledExecutorService scheduler;
 
     /**
      * Constructor for the FairLossLink class.
@@ -37,22 +59,89 @@ public class FairLossLink implements Link, Subscriber<Message>, Publisher<Messag
     public FairLossLink(UDPHost host, ExecutorService executor) {
         host.subscribe(this);
         this.host = host;
-        logger.setLevel(Level.OFF);
-        publisher = new SubmissionPublisher<>(executor, 256);
+        this.channel = host.openChannel();
+        logger.setLevel(Trace.LEVEL);
+        publisher = Pipeline.newPublisher(executor);
+        host.getMetrics().gauge("fll.lag", publisher::estimateMaximumLag);
+        batchBytes = Options.getInt(Options.BATCH_BYTES, 1472);
+        batchDelayMicros = Options.getInt(Options.BATCH_DELAY_MICROS, 200);
+        batches = new AtomicReferenceArray<Batch>(PeerTable.directory().capacity());
+        if (batchDelayMicros > 0) {
+            scheduler = Execution.newScheduler();
+        }
 
     }
 
+    private Batch batch(HostIP dest) {
+        Batch batch = batches.get(dest.getId());
+        if (batch == null) {
+            batches.compareAndSet(dest.getId(), null, new Batch(dest));
+            batch = batches.get(dest.getId());
+        }
+        return batch;
+    }
+
     /**
      * Sends a message to a destination address and port using UDP protocol.
-     * 
+     * The message is added to the pending batch of the destination, unless
+     * batching is disabled or the message does not fit in a batch.
+     *
      * @param m    the message to be sent
      * @param dest the destination address of the message
      */
     @Override
     public void send(Message m, HostIP dest) {
-        DatagramPacket packet = new DatagramPacket(m.toBytes(), m.toBytes().length, dest.getAddress(), dest.getPort());
-        logger.log(Level.INFO, "[FLL] - Sending message : " + m.getId() + " to " + dest);
-        host.send(packet);
+        send(m, dest, m.getAckSeq());
+    }
+
+    /**
+     * Sends a message with the given piggybacked acknowledgement. The cached
+     * encoding of the message is written as is and only the acknowledgement is
+     * patched, so retransmitting a message does not encode it again.
+     *
+     * @param m      the message to be sent
+     * @param dest   the destination address of the message
+     * @param ackSeq the piggybacked cumulative acknowledgement
+     */
+    public void send(Message m, HostIP dest, int ackSeq) {
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "[FLL] - Sending message : " + m.getId() + " to " + dest);
+        }
+        byte[] frame = m.toBytes();
+        int size = frame.length;
+        if (scheduler == null || size > batchBytes - MessageCodec.HEADER_SIZE) {
+            if (ackSeq == m.getAckSeq()) {
+                host.send(ByteBuffer.wrap(frame), dest);
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.put(frame);
+            MessageCodec.patchAckSeq(buffer, 0, ackSeq);
+            buffer.flip();
+            host.send(buffer, dest);
+            return;
+        }
+        Batch batch = batch(dest);
+        boolean mustSchedule;
+        synchronized (batch) {
+            if (batch.buffer.remaining() < size) {
+                batch.flush();
+            }
+            int start = batch.buffer.position();
+            batch.buffer.put(frame);
+            MessageCodec.patchAckSeq(batch.buffer, start, ackSeq);
+            batch.count++;
+            mustSchedule = !batch.flushScheduled;
+            batch.flushScheduled = true;
+        }
+        if (mustSchedule) {
+            scheduler.schedule(() -> {
+                synchronized (batch) {
+                    batch.flushScheduled = false;
+                    batch.flush();
+                }
+            }, batchDelayMicros, TimeUnit.MICROSECONDS);
+        }
 
     }
 
@@ -64,8 +153,10 @@ public class FairLossLink implements Link, Subscriber<Message>, Publisher<Messag
      */
     @Override
     public void deliver(Message msg) {
-        logger.log(Level.INFO, "[FLL] - Delivering message : " + msg.getId() + " from "
-                + msg.getSenderHostIP());
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "[FLL] - Delivering message : " + msg.getId() + " from "
+                    + msg.getSenderHostIP());
+        }
     }
 
     @Override
@@ -75,10 +166,38 @@ public class FairLossLink implements Link, Subscriber<Message>, Publisher<Messag
 
     }
 
+    /**
+     * Returns the channel of this link, to be set on every message it sends.
+     *
+     * @return the channel of this link
+     */
+    public int getChannel() {
+        return channel;
+    }
+
     @Override
     public void onNext(Message item) {
-        deliver(item);
-        publisher.submit(item);
+        if (item.getChannel() != channel) {
+            subscription.request(1);
+            return;
+        }
+        if (item.getType() == MsgType.BATCH) {
+            ByteBuffer frames = ByteBuffer.wrap(item.getData());
+            while (frames.hasRemaining()) {
+                Message msg = MessageCodec.decode(frames);
+                if (msg == null) {
+                    if (Trace.ENABLED) {
+                        logger.log(Level.WARNING, "[FLL] - Dropping malformed batch from " + item.getSenderHostIP());
+                    }
+                    break;
+                }
+                deliver(msg);
+                publisher.submit(msg);
+            }
+        } else {
+            deliver(item);
+            publisher.submit(item);
+        }
         subscription.request(1);
 
     }
@@ -90,7 +209,9 @@ public class FairLossLink implements Link, Subscriber<Message>, Publisher<Messag
 
     @Override
     public void onComplete() {
-        logger.log(Level.INFO, "Completed");
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "Completed");
+        }
     }
 
     @Override
@@ -98,4 +219,44 @@ public class FairLossLink implements Link, Subscriber<Message>, Publisher<Messag
         publisher.subscribe(subscriber);
     }
 
+    /**
+     * Messages waiting to be sent to one destination. The buffer starts with room
+     * for the BATCH header, written when the batch is flushed.
+     */
+    private class Batch {
+        private final HostIP dest;
+        private final ByteBuffer buffer;
+        private int count = 0;
+        private boolean flushScheduled = false;
+
+        public Batch(HostIP dest) {
+            this.dest = dest;
+            this.buffer = ByteBuffer.allocate(batchBytes);
+            buffer.position(MessageCodec.HEADER_SIZE);
+        }
+
+        /**
+         * Sends the pending messages, must be called while holding the batch lock.
+         * A single message is sent as a plain frame.
+         */
+        private void flush() {
+            if (count == 0) {
+                return;
+            }
+            buffer.flip();
+            if (count == 1) {
+                buffer.position(MessageCodec.HEADER_SIZE);
+            } else {
+                int length = buffer.limit() - MessageCodec.HEADER_SIZE;
+                MessageCodec.encodeHeader(buffer, MsgType.BATCH, host.getHostIP().getId(), dest.getId(), channel, 0,
+                        count, 0, 0, 0, length);
+                buffer.position(0);
+            }
+            host.send(buffer, dest);
+            buffer.clear();
+            buffer.position(MessageCodec.HEADER_SIZE);
+            count = 0;
+        }
+    }
+
 }
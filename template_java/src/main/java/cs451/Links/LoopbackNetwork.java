@@ -0,0 +1,47 @@
+package cs451.Links;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the {@link LoopbackUDPHost}s that can reach each other, by
+ * process id. Every launcher running stacks over the loopback transport creates
+ * its own, so that the hosts of one run are never seen by another run in the
+ * same JVM.
+ */
+public class LoopbackNetwork {
+
+    private final ConcurrentHashMap<Integer, LoopbackUDPHost> hosts = new ConcurrentHashMap<Integer, LoopbackUDPHost>();
+
+    /**
+     * Registers a host under its process id.
+     *
+     * @param host the host
+     * @throws IllegalStateException if a running host has the same id
+     */
+    void register(LoopbackUDPHost host) {
+        int id = host.getHostIP().getId();
+        if (hosts.putIfAbsent(id, host) != null) {
+            throw new IllegalStateException("Loopback host " + id + " already exists");
+        }
+    }
+
+    /**
+     * Removes a stopped host, so that a new host can take its id.
+     *
+     * @param host the host
+     */
+    void unregister(LoopbackUDPHost host) {
+        hosts.remove(host.getHostIP().getId(), host);
+    }
+
+    /**
+     * Returns the host of a process.
+     *
+     * @param id the process id
+     * @return the host, or null if none is registered
+     */
+    LoopbackUDPHost get(int id) {
+        return hosts.get(id);
+    }
+
+}
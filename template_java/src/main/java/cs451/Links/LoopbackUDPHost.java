@@ -0,0 +1,241 @@
+package cs451.Links;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import cs451.Models.HostIP;
+import cs451.Models.Message;
+import cs451.Models.MessageCodec;
+import cs451.Models.PeerTable;
+import cs451.Parser.Host;
+import cs451.utils.Metrics;
+import cs451.utils.Pipeline;
+import cs451.utils.Trace;
+
+/**
+ * Host exchanging datagrams in memory with the other hosts of its
+ * {@link LoopbackNetwork}, to run many stacks in one process without sockets.
+ * Every host has an inbox, a lock-free queue that any sender appends copies of
+ * its datagrams to. Once the host receives, a drain task running on its
+ * executor decodes and publishes the queued datagrams, at most one task at a
+ * time, so that the messages of a sender are published in the order they were
+ * sent as on a socket. As with UDP, datagrams sent to a host that does not
+ * exist, is stopped, or whose inbox is full are dropped.
+ *
+ * Hosts are found by process id in their network, they must be created before
+ * other hosts send to them.
+ */
+public class LoopbackUDPHost implements UDPHost {
+
+    private static final int INBOX_CAPACITY = 1 << 16;
+    // datagrams decoded by a drain task before it hands the thread back
+    private static final int DRAIN_BATCH = 64;
+
+    private final Logger logger = Logger.getLogger(LoopbackUDPHost.class.getName());
+    private final SubmissionPublisher<Message> publisher;
+    private final HostIP hostIP;
+    private final int port;
+    private final ExecutorService executor;
+    private final LoopbackNetwork network;
+    private final Queue<byte[]> inbox = new ConcurrentLinkedQueue<byte[]>();
+    private final AtomicInteger queued = new AtomicInteger(0);
+    // set while a drain task is submitted or running
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    // host of each destination, by process id
+    private final AtomicReferenceArray<LoopbackUDPHost> peers;
+
+    private volatile boolean receiving = false;
+    private volatile boolean running = true;
+    private final AtomicInteger channels = new AtomicInteger(0);
+    private final Metrics metrics = new Metrics();
+    private final LongAdder dropped = metrics.counter("loopback.dropped");
+    private final Metrics.Gauge queuedGauge;
+
+    /**
+     * Creates a host and registers it in the network under its process id,
+     * replacing a stopped host of the same id.
+     *
+     * @param host     Host object containing port number, IP address and id.
+     * @param executor ExecutorService to run threads.
+     * @param network  network of the hosts the host exchanges datagrams with.
+     * @throws IllegalStateException if a running host of the network has the
+     *                               same id.
+     */
+    public LoopbackUDPHost(Host host, ExecutorService executor, LoopbackNetwork network) {
+        this.executor = executor;
+        this.network = network;
+        publisher = Pipeline.newPublisher(executor);
+        hostIP = HostIP.of(host);
+        port = host.getPort();
+        peers = new AtomicReferenceArray<LoopbackUDPHost>(PeerTable.directory().capacity());
+        logger.setLevel(Trace.LEVEL);
+        network.register(this);
+        queuedGauge = metrics.gauge("loopback.queued", queued::get);
+    }
+
+    /**
+     * Copies the encoded message into the inbox of the destination.
+     *
+     * @param buffer buffer holding the encoded message between its position and
+     *               limit.
+     * @param dest   destination of the message.
+     */
+    @Override
+    public void send(ByteBuffer buffer, HostIP dest) {
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "Sending packet to " + dest + " with length " + buffer.remaining());
+        }
+        LoopbackUDPHost peer = peer(dest.getId());
+        if (peer == null || !peer.offer(buffer)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Returns the registered host of a process, cached once found.
+     */
+    private LoopbackUDPHost peer(int id) {
+        LoopbackUDPHost peer = peers.get(id);
+        if (peer == null || !peer.running) {
+            peer = network.get(id);
+            if (peer != null) {
+                peers.set(id, peer);
+            }
+        }
+        return peer;
+    }
+
+    private boolean offer(ByteBuffer buffer) {
+        if (!running) {
+            return false;
+        }
+        if (queued.incrementAndGet() > INBOX_CAPACITY) {
+            queued.decrementAndGet();
+            return false;
+        }
+        byte[] datagram = new byte[buffer.remaining()];
+        buffer.duplicate().get(datagram);
+        inbox.offer(datagram);
+        scheduleDrain();
+        return true;
+    }
+
+    private void scheduleDrain() {
+        if (receiving && !inbox.isEmpty() && draining.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Publishes up to DRAIN_BATCH datagrams, then submits a new task if more
+     * arrived so that other hosts sharing the executor get their turn.
+     */
+    private void drain() {
+        for (int i = 0; i < DRAIN_BATCH && running; i++) {
+            byte[] datagram = inbox.poll();
+            if (datagram == null) {
+                break;
+            }
+            queued.decrementAndGet();
+            Message msg = MessageCodec.decode(datagram, 0, datagram.length);
+            if (msg == null) {
+                if (Trace.ENABLED) {
+                    logger.log(Level.WARNING, "Dropping malformed packet");
+                }
+                continue;
+            }
+            publisher.submit(msg);
+        }
+        draining.set(false);
+        if (running) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Starts publishing the datagrams of the inbox, including those sent before.
+     */
+    @Override
+    public void receive() {
+        receiving = true;
+        scheduleDrain();
+    }
+
+    /**
+     * Stops the host. Datagrams still in its inbox are dropped.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        network.unregister(this);
+        queuedGauge.unregister();
+        inbox.clear();
+        queued.set(0);
+    }
+
+    /**
+     * Returns the port number of the host, which is never bound.
+     *
+     * @return Port number of the host.
+     */
+    @Override
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public HostIP getHostIP() {
+        return hostIP;
+    }
+
+    @Override
+    public int openChannel() {
+        return channels.getAndIncrement();
+    }
+
+    /**
+     * Returns 0, as received datagrams are not pooled.
+     *
+     * @return 0
+     */
+    @Override
+    public long getPoolExhaustions() {
+        return 0;
+    }
+
+    /**
+     * Returns an empty list, as the inbox is drained without receive workers.
+     *
+     * @return an empty list
+     */
+    @Override
+    public List<RingStats> getReceiveRingStats() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Subscribes a subscriber to the publisher.
+     */
+    @Override
+    public void subscribe(Subscriber<? super Message> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+}
@@ -1,7 +1,6 @@
 package cs451.Links;
 
-import java.net.DatagramPacket;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SubmissionPublisher;
 import java.util.concurrent.Flow.Publisher;
@@ -12,8 +11,9 @@ import java.util.logging.Logger;
 
 import cs451.Models.HostIP;
 import cs451.Models.Message;
-import cs451.Models.MsgType;
 import cs451.utils.Log;
+import cs451.utils.Pipeline;
+import cs451.utils.Trace;
 
 /**
  * Class implementing a perfect link.
@@ -28,16 +28,14 @@ public class PerfectLink implements Link, Subscriber<Message>, Publisher<Message
     private Subscription subscription;
     private Logger logger = Logger.getLogger(PerfectLink.class.getName());
     private StubbornLink stubbornLink;
-    private ConcurrentHashMap<Integer, Message> sent;
-    private ConcurrentHashMap<Integer, Message> delivered;
-    private ExecutorService executor;
     private SubmissionPublisher<Message> publisher;
     private boolean mustLog = false;
 
     /**
      * Constructor for the PerfectLink class.
-     * Initializes a StubbornLink object, subscribes to it, and initializes
-     * ConcurrentHashMaps for sent and delivered messages.
+     * Initializes a StubbornLink object and subscribes to it. The stubborn link
+     * delivers each message once, deduplicating on its per-sender receive window,
+     * so no message is retained here.
      * 
      * @param host     the UDPHost object to use for communication
      * @param executor the ExecutorService object to use for running threads
@@ -45,17 +43,33 @@ public class PerfectLink implements Link, Subscriber<Message>, Publisher<Message
     public PerfectLink(UDPHost host, ExecutorService executor) {
         stubbornLink = new StubbornLink(host, executor);
         stubbornLink.subscribe(this);
-        sent = new ConcurrentHashMap<Integer, Message>();
-        delivered = new ConcurrentHashMap<Integer, Message>();
-        this.executor = executor;
-        publisher = new SubmissionPublisher<Message>(executor, 256);
-        logger.setLevel(Level.OFF);
+        publisher = Pipeline.newPublisher(executor);
+        logger.setLevel(Trace.LEVEL);
+        host.getMetrics().gauge("pl.lag", publisher::estimateMaximumLag);
     }
 
     public void activateLogging() {
         mustLog = true;
     }
 
+    /**
+     * Returns the round-trip time estimates of the underlying stubborn link.
+     *
+     * @return the estimates, by peer id
+     */
+    public Map<Integer, RttStats> getRttStats() {
+        return stubbornLink.getRttStats();
+    }
+
+    /**
+     * Returns the congestion window state of the underlying stubborn link.
+     *
+     * @return the window state, by peer id
+     */
+    public Map<Integer, WindowStats> getWindowStats() {
+        return stubbornLink.getWindowStats();
+    }
+
     /**
      * Sends a message using the Perfect Link protocol.
      * 
@@ -64,10 +78,11 @@ public class PerfectLink implements Link, Subscriber<Message>, Publisher<Message
      */
     @Override
     public void send(Message m, HostIP dest) {
-        executor.submit(() -> stubbornLink.send(m, dest));
-        sent.put(m.getId(), m);
-        logger.log(Level.INFO, "[PL] - Sending message : " + m.getId() + " to " + dest);
-        logger.log(Level.INFO, "[PL] - Sent message : " + m.getId() + " to " + dest);
+        stubbornLink.send(m, dest);
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "[PL] - Sending message : " + m.getId() + " to " + dest);
+            logger.log(Level.INFO, "[PL] - Sent message : " + m.getId() + " to " + dest);
+        }
         if (mustLog) {
             String log = "b " + new String(m.getData()).trim() + "\n";
             Log.logFile(log);
@@ -75,26 +90,17 @@ public class PerfectLink implements Link, Subscriber<Message>, Publisher<Message
     }
 
     /**
-     * This method delivers a message by deserializing the data from the given
-     * DatagramPacket,
-     * storing it in the delivered HashMap with the corresponding ackedId as the
-     * key,
-     * and logging the delivery in the log file.
+     * This method delivers a message received from the stubborn link, which
+     * already filtered out duplicates, and logs the delivery in the log file.
      * 
-     * @param packet the DatagramPacket containing the serialized message to be
-     *               delivered
+     * @param msg the message to be delivered
      */
     @Override
     public void deliver(Message msg) {
-        if (msg.getType() == MsgType.ACK) {
-            logger.log(Level.INFO, "[PL] - Received ACK for message : " + msg.getAckedId());
-            publisher.submit(msg);
-            return;
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "[PL] - Delivering message : " + msg.getId() + " from "
+                    + msg.getSenderHostIP());
         }
-        int ackedId = msg.getId();
-        logger.log(Level.INFO, "[PL] - Delivering message : " + msg.getId() + " from "
-                + msg.getSenderHostIP());
-        delivered.put(ackedId, msg);
         if (mustLog) {
             String log = "d " + msg.getSenderId() + " " + new String(msg.getData()).trim() + "\n";
             Log.logFile(log);
@@ -121,7 +127,9 @@ public class PerfectLink implements Link, Subscriber<Message>, Publisher<Message
 
     @Override
     public void onComplete() {
-        logger.log(Level.INFO, "Completed");
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "Completed");
+        }
     }
 
     @Override
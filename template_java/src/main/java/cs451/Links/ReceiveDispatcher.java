@@ -0,0 +1,235 @@
+package cs451.Links;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import cs451.Models.Message;
+import cs451.Models.MessageCodec;
+import cs451.utils.Metrics;
+import cs451.utils.Options;
+import cs451.utils.Pipeline;
+import cs451.utils.Trace;
+
+/**
+ * Decodes received datagrams and publishes the messages they carry.
+ * With 0 workers, datagrams are handled on the receiving thread. With N
+ * workers, each datagram is handed to the worker owning its sender
+ * (senderId % N) through a preallocated {@link RingBuffer}, so decoding and
+ * publishing run on other cores while the messages of a given sender keep their
+ * arrival order.
+ * The receiving thread never waits for the workers : a datagram arriving while
+ * the ring of its worker is full is dropped, as the socket would drop it, and
+ * will be retransmitted. Idle workers wait following the configured
+ * {@link WaitStrategy}.
+ */
+public class ReceiveDispatcher {
+
+    private final BufferPool pool;
+    private final SubmissionPublisher<Message> publisher;
+    private final List<RingBuffer<Datagram>> rings;
+    private final Thread[] workers;
+    private final WaitStrategy waitStrategy;
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final List<Metrics.Gauge> gauges = new ArrayList<Metrics.Gauge>();
+    private final Logger logger = Logger.getLogger(ReceiveDispatcher.class.getName());
+
+    /**
+     * Creates a dispatcher and starts its workers.
+     *
+     * @param workers   number of workers, 0 to handle packets on the receiving
+     *                  thread
+     * @param pool      pool the datagram buffers are given back to once decoded,
+     *                  null without workers if the caller keeps its buffer
+     * @param publisher publisher of the decoded messages
+     * @param metrics   registry of the stack of the host
+     */
+    public ReceiveDispatcher(int workers, BufferPool pool, SubmissionPublisher<Message> publisher,
+            Metrics metrics) {
+        this.pool = pool;
+        this.publisher = publisher;
+        this.waitStrategy = WaitStrategy.of(Options.getString(Options.WAIT_STRATEGY, "park"));
+        logger.setLevel(Trace.LEVEL);
+        gauges.add(metrics.gauge("rx.queued", this::countQueued));
+        gauges.add(metrics.gauge("rx.dropped", this::getDropped));
+        gauges.add(metrics.gauge("rx.lag", publisher::estimateMaximumLag));
+        if (workers <= 0) {
+            this.rings = null;
+            this.workers = null;
+            return;
+        }
+        int ringSize = ringSize();
+        this.rings = new ArrayList<RingBuffer<Datagram>>(workers);
+        this.workers = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            RingBuffer<Datagram> ring = new RingBuffer<Datagram>(ringSize, Datagram::new);
+            rings.add(ring);
+            this.workers[i] = new Thread(() -> work(ring), "receive-shard-" + i);
+            this.workers[i].setDaemon(true);
+            this.workers[i].start();
+        }
+    }
+
+    private long countQueued() {
+        long count = 0;
+        if (rings != null) {
+            for (RingBuffer<Datagram> ring : rings) {
+                count += ring.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of workers to dispatch to, as configured. The fused
+     * pipeline calls the layers without locks, so it gets at most one worker.
+     *
+     * @return the number of workers
+     */
+    public static int workers() {
+        int workers = Options.getInt(Options.RECEIVE_WORKERS, 1);
+        return Pipeline.isFused() ? Math.min(workers, 1) : workers;
+    }
+
+    private static int ringSize() {
+        return Options.getInt(Options.RECEIVE_RING_SIZE, 128);
+    }
+
+    /**
+     * Returns the number of buffers the pool should hold so that every ring can
+     * be full while the receiving thread reads the next datagram.
+     *
+     * @param workers number of workers
+     * @return the capacity to give to the buffer pool
+     */
+    public static int poolCapacity(int workers) {
+        return workers <= 0 ? 1 : workers * RingBuffer.slots(ringSize()) + 1;
+    }
+
+    /**
+     * Returns whether datagrams are handed to workers rather than handled on the
+     * receiving thread.
+     *
+     * @return true if the dispatcher has workers
+     */
+    public boolean isSharded() {
+        return rings != null;
+    }
+
+    /**
+     * Dispatches a received datagram. The dispatcher takes ownership of the
+     * buffer and releases it to the pool once the message is decoded, or right
+     * away if the datagram is dropped.
+     *
+     * @param buffer buffer obtained from the pool holding the datagram
+     * @param length length of the datagram
+     */
+    public void dispatch(byte[] buffer, int length) {
+        if (rings == null) {
+            publish(buffer, length);
+            return;
+        }
+        RingBuffer<Datagram> ring = rings.get(MessageCodec.peekSenderId(buffer, 0) % rings.size());
+        long seq = ring.tryClaim();
+        if (seq < 0) {
+            pool.release(buffer);
+            return;
+        }
+        Datagram datagram = ring.get(seq);
+        datagram.buffer = buffer;
+        datagram.length = length;
+        ring.publish(seq);
+    }
+
+    private void work(RingBuffer<Datagram> ring) {
+        int idle = 0;
+        while (running.get()) {
+            Datagram datagram = ring.poll();
+            if (datagram == null) {
+                waitStrategy.idle(idle++);
+                continue;
+            }
+            idle = 0;
+            byte[] buffer = datagram.buffer;
+            int length = datagram.length;
+            datagram.buffer = null;
+            ring.release();
+            publish(buffer, length);
+        }
+    }
+
+    private void publish(byte[] buffer, int length) {
+        Message msg = MessageCodec.decode(buffer, 0, length);
+        if (pool != null) {
+            pool.release(buffer);
+        }
+        if (msg == null) {
+            if (Trace.ENABLED) {
+                logger.log(Level.WARNING, "Dropping malformed packet");
+            }
+            return;
+        }
+        publisher.submit(msg);
+    }
+
+    /**
+     * Returns the fill level of the ring of every worker.
+     *
+     * @return one snapshot per worker, empty without workers
+     */
+    public List<RingStats> getRingStats() {
+        List<RingStats> stats = new ArrayList<RingStats>();
+        if (rings != null) {
+            for (int i = 0; i < rings.size(); i++) {
+                RingBuffer<Datagram> ring = rings.get(i);
+                stats.add(new RingStats(i, ring.getCapacity(), ring.size(), ring.getHighWatermark(),
+                        ring.getRejected()));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the number of datagrams dropped because the ring of their worker
+     * was full.
+     *
+     * @return the number of dropped datagrams
+     */
+    public long getDropped() {
+        long count = 0;
+        if (rings != null) {
+            for (RingBuffer<Datagram> ring : rings) {
+                count += ring.getRejected();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Stops the workers once they are done with their current datagram, and
+     * unregisters the gauges of the dispatcher.
+     */
+    public void stop() {
+        running.set(false);
+        for (Metrics.Gauge gauge : gauges) {
+            gauge.unregister();
+        }
+        if (workers != null) {
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Slot of a ring : a pooled buffer and the length of the datagram it holds.
+     */
+    private static class Datagram {
+        private byte[] buffer;
+        private int length;
+    }
+
+}
@@ -0,0 +1,90 @@
+package cs451.Links;
+
+/**
+ * Link sequence numbers received from one peer, used to build acknowledgements.
+ * Every number up to {@link #getUpTo()} was received, and the numbers received
+ * among the next WINDOW_BITS are kept in a circular bitmap. Bit i of
+ * {@link #getSelective()} tells whether upTo + 1 + i was received.
+ * Numbers beyond the window are refused, the peer will retransmit them.
+ * Senders keep at most WINDOW_BITS messages in flight so that this does not
+ * happen in the normal case.
+ * The window doubles as the deduplication state of the sender : its memory does
+ * not depend on the number of messages received.
+ */
+public class ReceiveWindow {
+
+    public static final int SELECTIVE_BITS = 64;
+    public static final int WINDOW_BITS = 1024;
+    private static final int MASK = WINDOW_BITS - 1;
+    private final long[] bits = new long[WINDOW_BITS / 64];
+    private int upTo = 0;
+    private int recorded = 0;
+
+    /**
+     * Records the reception of a link sequence number.
+     *
+     * @param seq the link sequence number received
+     * @return true if seq was not received before, false for duplicates and
+     *         numbers beyond the window
+     */
+    public synchronized boolean record(int seq) {
+        if (seq <= upTo || seq - upTo > WINDOW_BITS) {
+            return false;
+        }
+        if (isSet(seq)) {
+            return false;
+        }
+        flip(seq);
+        recorded++;
+        // slides the window over the contiguous prefix
+        while (recorded > 0 && isSet(upTo + 1)) {
+            upTo++;
+            flip(upTo);
+            recorded--;
+        }
+        return true;
+    }
+
+    public synchronized int getUpTo() {
+        return upTo;
+    }
+
+    /**
+     * Returns the reception of the SELECTIVE_BITS numbers following
+     * {@link #getUpTo()}.
+     *
+     * @return bit i is set if upTo + 1 + i was received
+     */
+    public synchronized long getSelective() {
+        if (recorded == 0) {
+            return 0;
+        }
+        long selective = 0;
+        for (int i = 0; i < SELECTIVE_BITS; i++) {
+            if (isSet(upTo + 1 + i)) {
+                selective |= 1L << i;
+            }
+        }
+        return selective;
+    }
+
+    /**
+     * Returns whether every recorded number is covered by {@link #getUpTo()}.
+     *
+     * @return true if there is no gap in the received numbers
+     */
+    public synchronized boolean isContiguous() {
+        return recorded == 0;
+    }
+
+    private boolean isSet(int seq) {
+        int index = seq & MASK;
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void flip(int seq) {
+        int index = seq & MASK;
+        bits[index >>> 6] ^= 1L << index;
+    }
+
+}
@@ -0,0 +1,165 @@
+package cs451.Links;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded multi-producer single-consumer ring of preallocated events, in the
+ * style of the LMAX disruptor. Producers claim a sequence number, fill the
+ * event of its slot and publish it; the consumer reads the events in sequence
+ * order and releases each slot once it is done with it. Nothing is allocated
+ * after construction and producers never block : when the ring is full,
+ * claiming fails and the producer decides what to drop.
+ *
+ * The producer and consumer sequences are each kept in the middle of their own
+ * array of longs, so that they never share a cache line with each other or
+ * with other data.
+ *
+ * @param <E> the type of the events
+ */
+public class RingBuffer<E> {
+
+    // 64 bytes of longs on both sides of the sequence
+    private static final int PAD = 8;
+    private static final int VALUE = PAD - 1;
+
+    private final int mask;
+    private final Object[] events;
+    // sequence published in each slot, -1 before the first publication
+    private final AtomicLongArray published;
+    // next sequence to claim
+    private final AtomicLongArray tail = new AtomicLongArray(2 * PAD - 1);
+    // next sequence to consume
+    private final AtomicLongArray head = new AtomicLongArray(2 * PAD - 1);
+    private final AtomicLong highWatermark = new AtomicLong(0);
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates a ring buffer and preallocates its events.
+     *
+     * @param capacity number of slots, rounded up to a power of two
+     * @param factory  creates the event of each slot
+     */
+    public RingBuffer(int capacity, Supplier<E> factory) {
+        int size = slots(capacity);
+        this.mask = size - 1;
+        this.events = new Object[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            events[i] = factory.get();
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Returns the number of slots of a ring created with the given capacity.
+     *
+     * @param capacity the requested capacity
+     * @return the capacity rounded up to a power of two
+     */
+    public static int slots(int capacity) {
+        return capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    /**
+     * Claims the next slot. The caller must fill {@link #get(long)} and then
+     * {@link #publish(long)} the returned sequence.
+     *
+     * @return the claimed sequence, or -1 if the ring is full
+     */
+    public long tryClaim() {
+        while (true) {
+            long seq = tail.get(VALUE);
+            long size = seq - head.get(VALUE);
+            if (size >= events.length) {
+                rejected.increment();
+                return -1;
+            }
+            if (tail.compareAndSet(VALUE, seq, seq + 1)) {
+                if (size + 1 > highWatermark.get()) {
+                    highWatermark.accumulateAndGet(size + 1, Math::max);
+                }
+                return seq;
+            }
+        }
+    }
+
+    /**
+     * Returns the event of the slot of a sequence.
+     *
+     * @param seq a sequence claimed by the caller
+     * @return the event to fill
+     */
+    @SuppressWarnings("unchecked")
+    public E get(long seq) {
+        return (E) events[(int) (seq & mask)];
+    }
+
+    /**
+     * Makes a filled event visible to the consumer.
+     *
+     * @param seq the sequence claimed by the caller
+     */
+    public void publish(long seq) {
+        published.lazySet((int) (seq & mask), seq);
+    }
+
+    /**
+     * Returns the next event to consume, if it was published. Must only be
+     * called by the consumer, which then calls {@link #release()} once done with
+     * the event.
+     *
+     * @return the next event, or null if there is none yet
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long seq = head.get(VALUE);
+        int index = (int) (seq & mask);
+        if (published.get(index) != seq) {
+            return null;
+        }
+        return (E) events[index];
+    }
+
+    /**
+     * Gives the slot of the event returned by {@link #poll()} back to the
+     * producers.
+     */
+    public void release() {
+        head.lazySet(VALUE, head.get(VALUE) + 1);
+    }
+
+    public int getCapacity() {
+        return events.length;
+    }
+
+    /**
+     * Returns the number of claimed slots that were not released yet.
+     *
+     * @return the fill level of the ring
+     */
+    public int size() {
+        return (int) (tail.get(VALUE) - head.get(VALUE));
+    }
+
+    /**
+     * Returns the highest fill level reached since the ring was created.
+     *
+     * @return the high watermark of the ring
+     */
+    public long getHighWatermark() {
+        return highWatermark.get();
+    }
+
+    /**
+     * Returns the number of claims that failed because the ring was full.
+     *
+     * @return the number of rejected claims
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+}
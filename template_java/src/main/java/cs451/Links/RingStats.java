@@ -0,0 +1,57 @@
+package cs451.Links;
+
+/**
+ * Snapshot of the fill level of a receive ring.
+ */
+public class RingStats {
+
+    private final int shard;
+    private final int capacity;
+    private final int size;
+    private final long highWatermark;
+    private final long rejected;
+
+    public RingStats(int shard, int capacity, int size, long highWatermark, long rejected) {
+        this.shard = shard;
+        this.capacity = capacity;
+        this.size = size;
+        this.highWatermark = highWatermark;
+        this.rejected = rejected;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of datagrams waiting in the ring
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the highest number of datagrams that waited in the ring at once
+     */
+    public long getHighWatermark() {
+        return highWatermark;
+    }
+
+    /**
+     * @return the number of datagrams dropped because the ring was full
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("shard %d : %d/%d, high watermark %d, rejected %d", shard, size, capacity,
+                highWatermark, rejected);
+    }
+
+}
@@ -0,0 +1,91 @@
+package cs451.Links;
+
+/**
+ * Round-trip time estimator for one peer, computing the retransmission timeout
+ * as in RFC 6298 :
+ * RTTVAR = 3/4 RTTVAR + 1/4 |SRTT - R|, SRTT = 7/8 SRTT + 1/8 R and
+ * RTO = SRTT + max(G, 4 RTTVAR), clamped between MIN_RTO and MAX_RTO.
+ * Every expiry of the timeout doubles it, up to MAX_RTO, until a new sample
+ * is taken. Callers must follow Karn's rule and only sample messages that were
+ * transmitted once.
+ */
+public class RttEstimator {
+
+    public static final double INITIAL_RTO = 1000;
+    public static final double MIN_RTO = 20;
+    public static final double MAX_RTO = 10000;
+    private static final double ALPHA = 1.0 / 8;
+    private static final double BETA = 1.0 / 4;
+    private static final int K = 4;
+
+    private final double granularity;
+    private double srtt = 0;
+    private double rttVar = 0;
+    private double baseRto = INITIAL_RTO;
+    private int backoff = 0;
+    private long samples = 0;
+    private long timeouts = 0;
+
+    /**
+     * Creates an estimator without any sample, using INITIAL_RTO.
+     *
+     * @param granularity clock granularity G in milliseconds, the resolution at
+     *                    which the timeout is enforced
+     */
+    public RttEstimator(double granularity) {
+        this.granularity = granularity;
+    }
+
+    /**
+     * Updates the estimates with a round-trip time measurement and resets the
+     * backoff.
+     *
+     * @param rttMillis measured round-trip time in milliseconds
+     */
+    public synchronized void sample(double rttMillis) {
+        if (samples == 0) {
+            srtt = rttMillis;
+            rttVar = rttMillis / 2;
+        } else {
+            rttVar = (1 - BETA) * rttVar + BETA * Math.abs(srtt - rttMillis);
+            srtt = (1 - ALPHA) * srtt + ALPHA * rttMillis;
+        }
+        samples++;
+        baseRto = clamp(srtt + Math.max(granularity, K * rttVar));
+        backoff = 0;
+    }
+
+    /**
+     * Doubles the timeout after it expired, up to MAX_RTO.
+     */
+    public synchronized void backoff() {
+        timeouts++;
+        if (baseRto * (1L << backoff) < MAX_RTO) {
+            backoff++;
+        }
+    }
+
+    /**
+     * Returns the current retransmission timeout, backoff included.
+     *
+     * @return the retransmission timeout in milliseconds
+     */
+    public synchronized long getRto() {
+        return (long) Math.ceil(clamp(baseRto * (1L << backoff)));
+    }
+
+    /**
+     * Returns a snapshot of the estimates.
+     *
+     * @param peerId the id of the peer this estimator measures
+     * @return the current estimates
+     */
+    public synchronized RttStats getStats(int peerId) {
+        return new RttStats(peerId, srtt, rttVar, getRto(), backoff, samples, timeouts);
+    }
+
+    private static double clamp(double rto) {
+        return Math.min(MAX_RTO, Math.max(MIN_RTO, rto));
+    }
+
+}
@@ -0,0 +1,73 @@
+package cs451.Links;
+
+/**
+ * Snapshot of the round-trip time estimates of a link to one peer.
+ */
+public class RttStats {
+
+    private final int peerId;
+    private final double srtt;
+    private final double rttVar;
+    private final long rto;
+    private final int backoff;
+    private final long samples;
+    private final long timeouts;
+
+    public RttStats(int peerId, double srtt, double rttVar, long rto, int backoff, long samples, long timeouts) {
+        this.peerId = peerId;
+        this.srtt = srtt;
+        this.rttVar = rttVar;
+        this.rto = rto;
+        this.backoff = backoff;
+        this.samples = samples;
+        this.timeouts = timeouts;
+    }
+
+    public int getPeerId() {
+        return peerId;
+    }
+
+    /**
+     * @return the smoothed round-trip time in milliseconds, 0 before the first
+     *         sample
+     */
+    public double getSrtt() {
+        return srtt;
+    }
+
+    /**
+     * @return the round-trip time variation in milliseconds
+     */
+    public double getRttVar() {
+        return rttVar;
+    }
+
+    /**
+     * @return the retransmission timeout in milliseconds, backoff included
+     */
+    public long getRto() {
+        return rto;
+    }
+
+    /**
+     * @return the number of times the timeout was doubled since the last sample
+     */
+    public int getBackoff() {
+        return backoff;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("peer %d : srtt %.2f ms, rttvar %.2f ms, rto %d ms, backoff %d, samples %d, timeouts %d",
+                peerId, srtt, rttVar, rto, backoff, samples, timeouts);
+    }
+
+}
@@ -0,0 +1,99 @@
+package cs451.Links;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+import cs451.Models.Message;
+import cs451.Models.MessageCodec;
+
+/**
+ * Messages waiting for the windows of a peer to let them in, in the order they
+ * were sent. The first capacity messages are kept as they are, further ones are
+ * encoded back to back in a growable byte array and decoded when their turn
+ * comes : a peer that stopped answering costs a few dozen bytes per waiting
+ * message instead of the objects of each, and none of them is lost if it
+ * answers again.
+ * Not thread safe, guarded by the lock of its peer.
+ */
+class SendBacklog {
+
+    private static final int INITIAL_SPILL = 1 << 12;
+    private final int capacity;
+    private final ArrayDeque<Message> messages = new ArrayDeque<Message>();
+    private ByteBuffer spill = ByteBuffer.allocate(0);
+    // index of the first spilled frame not yet decoded
+    private int spillStart = 0;
+    private int spilled = 0;
+
+    /**
+     * @param capacity the number of messages kept as objects before spilling
+     */
+    SendBacklog(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queues a message after the ones already waiting.
+     *
+     * @param m the message to queue
+     */
+    void add(Message m) {
+        if (spilled == 0 && messages.size() < capacity) {
+            messages.add(m);
+            return;
+        }
+        int size = MessageCodec.encodedSize(m);
+        if (spill.remaining() < size) {
+            grow(size);
+        }
+        MessageCodec.encode(m, spill);
+        spilled++;
+    }
+
+    /**
+     * Takes the oldest waiting message.
+     *
+     * @return the oldest message, or null if none is waiting
+     */
+    Message poll() {
+        Message m = messages.poll();
+        if (m != null || spilled == 0) {
+            return m;
+        }
+        ByteBuffer frame = spill.duplicate();
+        frame.limit(spill.position()).position(spillStart);
+        m = MessageCodec.decode(frame);
+        spillStart = frame.position();
+        if (--spilled == 0) {
+            spill.clear();
+            spillStart = 0;
+        }
+        return m;
+    }
+
+    boolean isEmpty() {
+        return messages.isEmpty() && spilled == 0;
+    }
+
+    int size() {
+        return messages.size() + spilled;
+    }
+
+    /**
+     * Makes room for a frame of the given size, dropping the frames already
+     * decoded and doubling the array if that is not enough.
+     */
+    private void grow(int size) {
+        int live = spill.position() - spillStart;
+        int length = spill.capacity();
+        while (length - live < size) {
+            length = Math.max(length * 2, INITIAL_SPILL);
+        }
+        ByteBuffer grown = length == spill.capacity() ? spill : ByteBuffer.allocate(length);
+        System.arraycopy(spill.array(), spillStart, grown.array(), 0, live);
+        grown.clear().position(live);
+        spill = grown;
+        spillStart = 0;
+    }
+
+}
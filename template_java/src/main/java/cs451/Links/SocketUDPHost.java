@@ -0,0 +1,256 @@
+package cs451.Links;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import cs451.Models.HostIP;
+import cs451.Models.Message;
+import cs451.Models.MessageCodec;
+import cs451.Models.PeerTable;
+import cs451.Parser.Host;
+import cs451.utils.Metrics;
+import cs451.utils.Pipeline;
+import cs451.utils.Trace;
+
+/**
+ * Host built on a blocking java.net.DatagramSocket, with one receive loop
+ * running on the executor.
+ */
+public class SocketUDPHost implements UDPHost {
+
+    private static final int MAX_PKT_SIZE = 65535;
+    private static final byte[] EMPTY = new byte[0];
+    private DatagramSocket socket;
+    private SubmissionPublisher<Message> publisher;
+    private final Logger logger = Logger.getLogger(SocketUDPHost.class.getName());
+    private HostIP hostIP;
+    private BufferPool receivePool;
+    private ReceiveDispatcher dispatcher;
+    // send packet of each destination, by process id
+    private AtomicReferenceArray<DatagramPacket> templates;
+
+    private AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicInteger channels = new AtomicInteger(0);
+    private final Metrics metrics = new Metrics();
+
+    private ExecutorService executor;
+
+    /**
+     * Creates a host with a given port number and IP address.
+     * 
+     * @param host     Host object containing port number, IP address and id.
+     * @param executor ExecutorService to run threads.
+     */
+    public SocketUDPHost(Host host, ExecutorService executor) {
+        if (host.getPort() < 0 || host.getPort() > 65535) {
+            System.err.println("Port number must be between 0 and 65535!");
+            return;
+        }
+
+        InetAddress address;
+
+        try {
+            address = InetAddress.getByName(host.getIp());
+        } catch (UnknownHostException e) {
+            System.err.println("IP address is not valid!");
+            running.set(false);
+            return;
+        } catch (SecurityException s) {
+            System.err.println("Cannot resolve address, SecurityException");
+            running.set(false);
+            return;
+        }
+
+        try {
+            socket = new DatagramSocket(host.getPort(), address);
+        } catch (SocketException e) {
+            e.printStackTrace();
+            running.set(false);
+            return;
+        } catch (SecurityException s) {
+            System.err.println("Cannot resolve Socket, SecurityException");
+            running.set(false);
+            return;
+        }
+        this.executor = executor;
+        publisher = Pipeline.newPublisher(executor);
+        int workers = ReceiveDispatcher.workers();
+        if (workers > 0) {
+            receivePool = new BufferPool(ReceiveDispatcher.poolCapacity(workers), MAX_PKT_SIZE);
+        }
+        dispatcher = new ReceiveDispatcher(workers, receivePool, publisher, metrics);
+        hostIP = HostIP.of(host);
+        templates = new AtomicReferenceArray<DatagramPacket>(PeerTable.directory().capacity());
+        running.set(true);
+        logger.setLevel(Trace.LEVEL);
+    }
+
+    /**
+     * Sends an encoded message to the given destination.
+     * 
+     * @param buffer buffer holding the encoded message between its position and
+     *               limit.
+     * @param dest   destination of the message.
+     */
+    @Override
+    public void send(ByteBuffer buffer, HostIP dest) {
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "Sending packet to " + dest + " with length " + buffer.remaining());
+        }
+        DatagramPacket packet = template(dest);
+        // the socket locks the packet while sending it, sends to the same
+        // destination are serialized anyway
+        synchronized (packet) {
+            packet.setData(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            try {
+                socket.send(packet);
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                packet.setData(EMPTY);
+            }
+        }
+    }
+
+    /**
+     * Returns the packet reused for every datagram sent to a destination, its
+     * address set once.
+     */
+    private DatagramPacket template(HostIP dest) {
+        int id = dest.getId();
+        DatagramPacket packet = templates.get(id);
+        if (packet == null) {
+            templates.compareAndSet(id, null, new DatagramPacket(EMPTY, 0, dest.getSocketAddress()));
+            packet = templates.get(id);
+        }
+        return packet;
+    }
+
+    /**
+     * Receives packets from the host.
+     * When the dispatcher has workers, each datagram is received into a pooled
+     * buffer handed to the worker owning the sender, which gives it back once
+     * the message is decoded. Otherwise a single buffer is reused and the
+     * message is decoded and published on this thread.
+     */
+    @Override
+    public void receive() {
+        executor.submit(() -> {
+            boolean sharded = dispatcher.isSharded();
+            byte[] own = sharded ? null : new byte[MAX_PKT_SIZE];
+            DatagramPacket packet = new DatagramPacket(new byte[0], 0);
+            while (running.get()) {
+                byte[] buf = sharded ? receivePool.acquire() : own;
+                packet.setData(buf);
+                try {
+                    socket.receive(packet);
+                } catch (IOException e) {
+                    if (sharded) {
+                        receivePool.release(buf);
+                    }
+                    e.printStackTrace();
+                    return;
+                }
+                if (Trace.ENABLED) {
+                    logger.log(Level.INFO,
+                            "Received packet from " + packet.getAddress().getHostAddress() + ":" + packet.getPort()
+                                    + " with length " + packet.getLength());
+                }
+                if (sharded) {
+                    dispatcher.dispatch(buf, packet.getLength());
+                    continue;
+                }
+                Message msg = MessageCodec.decode(buf, 0, packet.getLength());
+                if (msg == null) {
+                    if (Trace.ENABLED) {
+                        logger.log(Level.WARNING, "Dropping malformed packet");
+                    }
+                    continue;
+                }
+                publisher.submit(msg);
+            }
+            return;
+        });
+
+    }
+
+    /**
+     * Stops the host.
+     */
+    @Override
+    public void stop() {
+        running.set(false);
+        dispatcher.stop();
+        socket.close();
+    }
+
+    /**
+     * Returns the port number of the host.
+     * 
+     * @return Port number of the host.
+     */
+    @Override
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Returns the IP address of the host.
+     * 
+     * @return IP address of the host.
+     */
+    @Override
+    public HostIP getHostIP() {
+        return hostIP;
+    }
+
+    /**
+     * Returns the number of times the receive buffer pool was empty and a buffer
+     * had to be allocated.
+     * 
+     * @return number of receive buffer pool exhaustion events, 0 without
+     *         workers as no pool is used then.
+     */
+    @Override
+    public long getPoolExhaustions() {
+        return receivePool == null ? 0 : receivePool.getExhaustionCount();
+    }
+
+    @Override
+    public List<RingStats> getReceiveRingStats() {
+        return dispatcher.getRingStats();
+    }
+
+    @Override
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public int openChannel() {
+        return channels.getAndIncrement();
+    }
+
+    /**
+     * Subscribes a subscriber to the publisher.
+     */
+    @Override
+    public void subscribe(Subscriber<? super Message> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+}
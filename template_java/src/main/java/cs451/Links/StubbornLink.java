@@ -1,17 +1,23 @@
 package cs451.Links;
 
-import java.net.DatagramPacket;
-import java.util.Set;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Flow.Publisher;
 import java.util.concurrent.Flow.Subscriber;
 import java.util.concurrent.Flow.Subscription;
 import java.util.concurrent.SubmissionPublisher;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,6 +25,13 @@ import cs451.Models.HostIP;
 import cs451.Models.Message;
 import cs451.Models.Metadata;
 import cs451.Models.MsgType;
+import cs451.Models.PeerTable;
+import cs451.utils.Execution;
+import cs451.utils.Histogram;
+import cs451.utils.Metrics;
+import cs451.utils.Options;
+import cs451.utils.Pipeline;
+import cs451.utils.Trace;
 
 /**
  * Class implementing a stubborn link. Properties of stubborn links should be
@@ -27,120 +40,480 @@ import cs451.Models.MsgType;
  * process pj, and pi does not crash, then pj delivers m an infinite number of
  * times
  * SL2. No creation: No message is delivered unless it was sent
+ *
+ * Messages to a peer are numbered with a per-peer link sequence number.
+ * Acknowledgements are cumulative ("everything up to n") with a selective
+ * bitmap for the numbers received above n. They are delayed by ACK_DELAY to
+ * cover several messages, re-emitted right away on duplicates, and piggybacked
+ * on the data sent in the reverse direction.
+ *
+ * Retransmissions are timed on a hashed timing wheel rather than one scheduled
+ * task per message : on each tick, the due messages of a destination are
+ * resent together with a single piggybacked acknowledgement.
+ * The retransmission timeout of a destination is computed from the round-trip
+ * times measured on its acknowledgements (see {@link RttEstimator}) and backs
+ * off while retransmissions go unanswered.
+ *
+ * The number of messages in flight to a destination is limited by an AIMD
+ * congestion window : it grows by one message per acknowledged message up to
+ * the slow start threshold and by one message per window after, and is halved
+ * at most once per window of messages when retransmission timeouts expire.
+ * Link sequence numbers in flight also stay within the receive window of the
+ * destination from its lowest unacknowledged one, as selectively acknowledged
+ * messages do not slide that window.
+ *
+ * Sending only queues the message in the backlog of its destination : messages
+ * are taken from the backlog and transmitted by a task of the executor, as the
+ * windows let them in, so the caller never waits for the socket. No message is
+ * ever dropped from a backlog : callers never block either, as they are the
+ * threads of the executor the acknowledgements need. The backlog of a
+ * destination that answers is drained as fast as it acknowledges, while the
+ * one of a destination that stopped answering keeps growing until it answers
+ * again. Past {@link Options#SEND_BACKLOG} messages, a backlog keeps further
+ * messages encoded (see {@link SendBacklog}) to bound the memory they take.
+ *
+ * The receive windows are the only deduplication state of the stack, so the
+ * duplicates dropped by perfect links are counted here, along with
+ * retransmissions, round-trip times and the messages waiting for
+ * an acknowledgement or in a backlog (see {@link Metrics}).
  */
 public class StubbornLink implements Link, Subscriber<Message>, Publisher<Message> {
 
-    private static final long TIME_PERIOD = 5000;
     private static final TimeUnit TIME_UNIT = TimeUnit.MILLISECONDS;
+    private static final long ACK_DELAY = 1;
+    private static final long WHEEL_TICK = 10;
+    private static final int WHEEL_SIZE = 512;
+    private static final int ACK_PAYLOAD_SIZE = 4 + 8;
+    private static final double INITIAL_CWND = 16;
+    private static final double MIN_CWND = 2;
+    private static final double MAX_CWND = ReceiveWindow.WINDOW_BITS;
     private FairLossLink fairLossLink;
-    private ConcurrentHashMap<Integer, Message> delivered;
-    private ConcurrentHashMap<Integer, ScheduledFuture<?>> waitForAck;
-    private Set<Integer> acked;
+    private HostIP myHostIP;
+    // link state of each peer, by process id, created on first use
+    private AtomicReferenceArray<Peer> peers;
     private Subscription subscription;
-    private ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    private ScheduledExecutorService scheduler = Execution.newScheduler();
+    private final TimingWheel<Outstanding> retransmissions;
     private final Logger logger = Logger.getLogger(StubbornLink.class.getName());
     private final SubmissionPublisher<Message> publisher;
+    private final ExecutorService executor;
+    private final int backlogCapacity;
+    private final LongAdder sent;
+    private final LongAdder retransmitted;
+    private final LongAdder duplicates;
+    private final Histogram rttMicros;
 
     /**
      * This class represents a StubbornLink, which is a reliable link that
      * guarantees that a message will be delivered
      * to the destination at least once. It is built on top of the FairLossLink
      * class, which provides a best-effort
-     * unreliable link. This class keeps track of delivered messages and waits for
-     * acknowledgements from the destination.
+     * unreliable link. This class keeps track of the sequence numbers received
+     * from each peer and waits for acknowledgements from the destination.
      * If an acknowledgement is not received within a certain time frame, the
      * message is resent.
-     * 
+     *
      * @param host     the UDPHost object representing the host of the link
      * @param executor the ExecutorService object used to execute tasks
      *                 asynchronously
      */
     public StubbornLink(UDPHost host, ExecutorService executor) {
         fairLossLink = new FairLossLink(host, executor);
-        delivered = new ConcurrentHashMap<Integer, Message>();
-        waitForAck = new ConcurrentHashMap<Integer, ScheduledFuture<?>>();
-        acked = ConcurrentHashMap.newKeySet();
+        myHostIP = host.getHostIP();
+        peers = new AtomicReferenceArray<Peer>(PeerTable.directory().capacity());
+        retransmissions = new TimingWheel<Outstanding>(WHEEL_TICK, WHEEL_SIZE, scheduler, this::retransmit);
         fairLossLink.subscribe(this);
-        publisher = new SubmissionPublisher<>(executor, 256);
-        logger.setLevel(Level.OFF);
+        publisher = Pipeline.newPublisher(executor);
+        this.executor = executor;
+        backlogCapacity = Options.getInt(Options.SEND_BACKLOG, 1 << 16);
+        logger.setLevel(Trace.LEVEL);
+        Metrics metrics = host.getMetrics();
+        sent = metrics.counter("sbl.sent");
+        retransmitted = metrics.counter("sbl.retransmissions");
+        duplicates = metrics.counter("sbl.duplicates");
+        rttMicros = metrics.histogram("sbl.rttMicros");
+        metrics.gauge("sbl.outstanding", this::countOutstanding);
+        metrics.gauge("sbl.backlog", this::countBacklog);
+        metrics.gauge("sbl.lag", publisher::estimateMaximumLag);
     }
 
     /**
      * Sends a message using the Stubborn Link protocol.
-     * If the message has not been acknowledged, it resends the message periodically
-     * until it is acknowledged.
-     * If the message has already been acknowledged, it cancels the scheduled task
-     * for resending the message.
-     * 
+     * The message is queued in the backlog of the destination and transmitted
+     * by a task of the executor once its windows make room.
+     *
      * @param m    the message to be sent
      * @param dest the destination IP address
      */
     @Override
     public void send(Message m, HostIP dest) {
-        ScheduledFuture<?> task = scheduler.scheduleAtFixedRate(() -> {
-            if (!acked.contains(m.getId())) {
-                logger.log(Level.INFO,
-                        "[SBL] - Sending message : " + m.getId() + " to " + dest);
-                fairLossLink.send(m, dest);
-            } else {
-                logger.log(Level.INFO, "[SBL] - Message : " + m.getId() + " already acked");
-                waitForAck.get(m.getId()).cancel(true);
-                waitForAck.remove(m.getId());
+        Peer peer = peer(dest.getId());
+        synchronized (peer) {
+            peer.backlog.add(m);
+        }
+        drain(peer);
+    }
+
+    /**
+     * Has the backlog of a peer sent by a task of the executor, unless one is
+     * already doing it.
+     */
+    private void drain(Peer peer) {
+        if (peer.draining.compareAndSet(false, true)) {
+            executor.execute(() -> sendBacklog(peer));
+        }
+    }
+
+    /**
+     * Sends the backlogged messages of a peer that fit in its windows, until
+     * none is left or the windows are full. Acknowledgements opening the
+     * windows start a new drain.
+     */
+    private void sendBacklog(Peer peer) {
+        HostIP dest = HostIP.byId(peer.id);
+        List<Message> admitted = new ArrayList<Message>();
+        while (true) {
+            int firstSeq;
+            synchronized (peer) {
+                firstSeq = peer.nextSeq.get() + 1;
+                while (!peer.backlog.isEmpty() && peer.inFlight < peer.cwnd
+                        && peer.nextSeq.get() - peer.cumAcked < ReceiveWindow.WINDOW_BITS) {
+                    admitted.add(peer.backlog.poll());
+                    peer.nextSeq.incrementAndGet();
+                    peer.inFlight++;
+                }
+                if (admitted.isEmpty()) {
+                    peer.draining.set(false);
+                    return;
+                }
+            }
+            for (Message m : admitted) {
+                admit(peer, m, dest, firstSeq++);
+            }
+            admitted.clear();
+        }
+    }
+
+    /**
+     * Sends a message that entered the windows with its link sequence number.
+     * It is resent on every retransmission timeout until the destination
+     * acknowledges it.
+     */
+    private void admit(Peer peer, Message m, HostIP dest, int seq) {
+        Outstanding out = new Outstanding(m.withLink(fairLossLink.getChannel(), seq, 0), dest, seq);
+        peer.outstanding.put(out.seq, out);
+        transmit(out, piggybackedAck(peer));
+        out.timeout = retransmissions.arm(out, peer.rtt.getRto());
+        // the acknowledgement may have arrived before the timeout was stored
+        if (!peer.outstanding.containsKey(out.seq)) {
+            out.timeout.cancel();
+        }
+    }
+
+    /**
+     * Resends the messages whose retransmission timeout expired, destination by
+     * destination, and re-arms their timeouts. A message sent after the last
+     * recovery of a destination started, or a retransmission expiring again,
+     * starts a new recovery : the retransmission timeout of the destination
+     * backs off and its congestion window is halved. Other messages of an ongoing
+     * recovery are resent with the timeout unchanged, so that it backs off once
+     * per recovery rather than once per tick.
+     *
+     * @param due the messages whose timeout expired on this tick
+     */
+    private void retransmit(List<Outstanding> due) {
+        Map<Integer, List<Outstanding>> byDest = new HashMap<Integer, List<Outstanding>>();
+        for (Outstanding out : due) {
+            byDest.computeIfAbsent(out.dest.getId(), id -> new ArrayList<Outstanding>()).add(out);
+        }
+        for (Map.Entry<Integer, List<Outstanding>> entry : byDest.entrySet()) {
+            Peer peer = peer(entry.getKey());
+            int ackSeq = piggybackedAck(peer);
+            int highest = 0;
+            boolean retried = false;
+            for (Outstanding out : entry.getValue()) {
+                highest = Math.max(highest, out.seq);
+                retried |= out.transmissions > 1;
+            }
+            synchronized (peer) {
+                if (highest > peer.recoverySeq || retried) {
+                    peer.rtt.backoff();
+                    peer.ssthresh = Math.max(peer.cwnd / 2, MIN_CWND);
+                    peer.cwnd = peer.ssthresh;
+                    peer.recoverySeq = peer.nextSeq.get();
+                }
+            }
+            long rto = peer.rtt.getRto();
+            for (Outstanding out : entry.getValue()) {
+                if (peer.outstanding.get(out.seq) != out) {
+                    continue;
+                }
+                transmit(out, ackSeq);
+                out.timeout = retransmissions.arm(out, rto);
+                if (!peer.outstanding.containsKey(out.seq)) {
+                    out.timeout.cancel();
+                }
             }
-        }, 0, TIME_PERIOD, TIME_UNIT);
-        waitForAck.put(m.getId(), task);
+        }
     }
 
     /**
-     * This method is responsible for delivering the received packet. It extracts
-     * the message from the packet and logs the
-     * message id and the sender's address. Depending on the message type, it either
-     * adds the message id to the list of
-     * acknowledged messages or adds the message to the list of delivered messages
-     * and sends an acknowledgement message to
-     * the sender. It also submits the packet to the publisher.
+     * Returns the cumulative acknowledgement to piggyback on messages to the
+     * peer. It only counts as received by the peer once the message carrying it
+     * is acknowledged, see {@link #acknowledge(Peer, int, long)}.
+     */
+    private int piggybackedAck(Peer peer) {
+        return peer.window.getUpTo();
+    }
+
+    /**
+     * Transmits an outstanding message with a piggybacked cumulative
+     * acknowledgement of what was received from the destination. The message
+     * already carries its link fields, so its cached encoding is reused and only
+     * the acknowledgement is patched.
+     */
+    private void transmit(Outstanding out, int ackSeq) {
+        if (out.transmissions++ == 0) {
+            out.sentAt = Execution.nanoTime();
+            sent.increment();
+        } else {
+            retransmitted.increment();
+        }
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "[SBL] - Sending message : " + out.seq + " to " + out.dest);
+        }
+        out.ackSeq = ackSeq;
+        fairLossLink.send(out.msg, out.dest, ackSeq);
+    }
+
+    /**
+     * This method is responsible for delivering the received packet.
+     * An ACK releases the acknowledged messages. Any other message first releases
+     * the messages acknowledged by its piggybacked cumulative acknowledgement, is
+     * recorded in the receive window of its sender and is submitted to the
+     * publisher the first time it is received. The window is the only
+     * deduplication state, so a delivered message is not retained.
+     * Duplicates are acknowledged right away, as the previous acknowledgement was
+     * probably lost, and so are messages beyond the window, which are dropped
+     * until the sender retransmits them.
      *
-     * @param packet the packet to be delivered
+     * @param msg the message to be delivered
      */
     @Override
     public void deliver(Message msg) {
-        logger.log(Level.INFO,
-                "[SBL] - Received  : " + msg.getId());
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO,
+                    "[SBL] - Received  : " + msg.getId());
+        }
+        Peer peer = peer(msg.getSenderId());
 
         switch (msg.getType()) {
             // sender side
             case ACK:
-                int ackedId = msg.getAckedId();
-                if (!acked.contains(ackedId)) {
-                    logger.log(Level.INFO, "[SBL] - Received ACK for message : " + ackedId);
-                    acked.add(ackedId);
-                    logger.log(Level.INFO, "[SBL] - Added ACK : " + ackedId);
-                    publisher.submit(msg);
-
+                ByteBuffer buffer = ByteBuffer.wrap(msg.getData());
+                int upTo = buffer.getInt();
+                long selective = buffer.getLong();
+                if (Trace.ENABLED) {
+                    logger.log(Level.INFO, "[SBL] - Received ACK up to : " + upTo + " from " + msg.getSenderId());
                 }
-
+                acknowledge(peer, upTo, selective);
                 break;
             // reciever side
-            case DATA:
-                if (!delivered.containsKey(msg.getId())) {
-                    delivered.put(msg.getId(), msg);
+            default:
+                if (msg.getAckSeq() > 0) {
+                    acknowledge(peer, msg.getAckSeq(), 0);
+                }
+                if (!peer.window.record(msg.getLinkSeq())) {
+                    duplicates.increment();
+                    sendAck(peer, msg.getSenderHostIP(), true);
+                    break;
+                }
+                if (Trace.ENABLED) {
                     logger.log(Level.INFO, "[SBL] - Delivering packet : " + msg.getId() + " from "
                             + msg.getSenderHostIP());
-                    Metadata ackMetadata = new Metadata(MsgType.ACK, msg.getRecieverId(), msg.getSenderId(),
-                            msg.getSeqNum(),
-                            msg.getRecieverHostIP(),
-                            msg.getSenderHostIP());
-                    Message ack = new Message(ackMetadata, msg.ackPayload());
-                    fairLossLink.send(ack, msg.getSenderHostIP());
-                    publisher.submit(msg);
                 }
-                break;
-            default:
+                scheduleAck(peer, msg.getSenderHostIP());
+                publisher.submit(msg);
                 break;
         }
 
     }
 
+    /**
+     * Stops retransmitting every message covered by an acknowledgement.
+     * The most recently sent of the released messages gives a round-trip time
+     * sample, unless it was retransmitted (Karn's rule). The acknowledgements
+     * piggybacked on the released messages are known to have reached the peer.
+     * The released messages open the congestion window, letting backlogged
+     * messages be sent.
+     *
+     * @param peer      the peer that sent the acknowledgement
+     * @param upTo      every link sequence number up to this one was received
+     * @param selective bit i is set if upTo + 1 + i was received
+     */
+    private void acknowledge(Peer peer, int upTo, long selective) {
+        long now = Execution.nanoTime();
+        Outstanding latest = null;
+        int released = 0;
+        synchronized (peer) {
+            for (int seq = peer.cumAcked + 1; seq <= upTo; seq++) {
+                Outstanding out = release(peer, seq);
+                latest = latest(latest, out);
+                released += out == null ? 0 : 1;
+            }
+            peer.cumAcked = Math.max(peer.cumAcked, upTo);
+        }
+        while (selective != 0) {
+            int offset = Long.numberOfTrailingZeros(selective);
+            Outstanding out = release(peer, upTo + 1 + offset);
+            latest = latest(latest, out);
+            released += out == null ? 0 : 1;
+            selective &= selective - 1;
+        }
+        if (latest != null && latest.transmissions == 1) {
+            peer.rtt.sample((now - latest.sentAt) / 1e6);
+            rttMicros.record((now - latest.sentAt) / 1000);
+        }
+        if (released > 0) {
+            openWindow(peer, released);
+        }
+    }
+
+    /**
+     * Grows the congestion window for acknowledged messages and has the
+     * backlogged messages that now fit in it sent.
+     *
+     * @param peer     the peer that acknowledged the messages
+     * @param released the number of messages acknowledged
+     */
+    private void openWindow(Peer peer, int released) {
+        boolean waiting;
+        synchronized (peer) {
+            peer.inFlight -= released;
+            if (peer.cwnd < peer.ssthresh) {
+                peer.cwnd += released;
+            } else {
+                peer.cwnd += released / peer.cwnd;
+            }
+            peer.cwnd = Math.min(peer.cwnd, MAX_CWND);
+            waiting = !peer.backlog.isEmpty();
+        }
+        if (waiting) {
+            drain(peer);
+        }
+    }
+
+    private Outstanding release(Peer peer, int seq) {
+        Outstanding out = peer.outstanding.remove(seq);
+        if (out != null) {
+            if (out.timeout != null) {
+                out.timeout.cancel();
+            }
+            peer.ackConfirmed.accumulateAndGet(out.ackSeq, Math::max);
+        }
+        return out;
+    }
+
+    private static Outstanding latest(Outstanding a, Outstanding b) {
+        if (a == null || (b != null && b.sentAt > a.sentAt)) {
+            return b;
+        }
+        return a;
+    }
+
+    /**
+     * Schedules an acknowledgement to the peer after ACK_DELAY, unless one is
+     * already scheduled.
+     */
+    private void scheduleAck(Peer peer, HostIP dest) {
+        if (peer.ackScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                peer.ackScheduled.set(false);
+                sendAck(peer, dest, false);
+            }, ACK_DELAY, TIME_UNIT);
+        }
+    }
+
+    /**
+     * Sends the current acknowledgement state to the peer. Unless forced, nothing
+     * is sent if it is covered by an acknowledgement already sent on its own, or
+     * piggybacked on a message the peer acknowledged. A piggybacked
+     * acknowledgement alone does not count, as the message carrying it may be
+     * lost.
+     */
+    private void sendAck(Peer peer, HostIP dest, boolean force) {
+        int upTo;
+        long selective;
+        synchronized (peer.window) {
+            upTo = peer.window.getUpTo();
+            selective = peer.window.getSelective();
+        }
+        if (!force && selective == 0
+                && (upTo <= peer.lastAckSent.get() || upTo <= peer.ackConfirmed.get())) {
+            return;
+        }
+        peer.lastAckSent.accumulateAndGet(upTo, Math::max);
+        Metadata ackMetadata = new Metadata(MsgType.ACK, myHostIP.getId(), dest.getId(), 0, myHostIP, dest);
+        ByteBuffer payload = ByteBuffer.allocate(ACK_PAYLOAD_SIZE);
+        payload.putInt(upTo);
+        payload.putLong(selective);
+        Message ack = new Message(ackMetadata, payload.array());
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "[SBL] - Sending ACK up to : " + upTo + " to " + dest);
+        }
+        fairLossLink.send(ack.withLink(fairLossLink.getChannel(), 0, upTo), dest);
+    }
+
+    private Peer peer(int id) {
+        Peer peer = peers.get(id);
+        if (peer == null) {
+            peers.compareAndSet(id, null, new Peer(id, backlogCapacity));
+            peer = peers.get(id);
+        }
+        return peer;
+    }
+
+    /**
+     * Returns the round-trip time estimates of every peer this link exchanged
+     * messages with.
+     *
+     * @return the estimates, by peer id
+     */
+    public Map<Integer, RttStats> getRttStats() {
+        Map<Integer, RttStats> stats = new TreeMap<Integer, RttStats>();
+        for (int id = 0; id < peers.length(); id++) {
+            Peer peer = peers.get(id);
+            if (peer != null) {
+                stats.put(id, peer.rtt.getStats(id));
+            }
+        }
+        return stats;
+    }
+
+    private long countOutstanding() {
+        long count = 0;
+        for (int id = 0; id < peers.length(); id++) {
+            Peer peer = peers.get(id);
+            if (peer != null) {
+                count += peer.outstanding.size();
+            }
+        }
+        return count;
+    }
+
+    private long countBacklog() {
+        long count = 0;
+        for (int id = 0; id < peers.length(); id++) {
+            Peer peer = peers.get(id);
+            if (peer != null) {
+                synchronized (peer) {
+                    count += peer.backlog.size();
+                }
+            }
+        }
+        return count;
+    }
+
     @Override
     public void onSubscribe(Subscription subscription) {
         this.subscription = subscription;
@@ -162,7 +535,9 @@ public class StubbornLink implements Link, Subscriber<Message>, Publisher<Messag
 
     @Override
     public void onComplete() {
-        logger.log(Level.INFO, "Completed");
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "Completed");
+        }
     }
 
     @Override
@@ -170,4 +545,75 @@ public class StubbornLink implements Link, Subscriber<Message>, Publisher<Messag
         publisher.subscribe(subscriber);
     }
 
+    /**
+     * Returns the congestion window state of every peer this link exchanged
+     * messages with.
+     *
+     * @return the window state, by peer id
+     */
+    public Map<Integer, WindowStats> getWindowStats() {
+        Map<Integer, WindowStats> stats = new TreeMap<Integer, WindowStats>();
+        for (int id = 0; id < peers.length(); id++) {
+            Peer peer = peers.get(id);
+            if (peer == null) {
+                continue;
+            }
+            synchronized (peer) {
+                stats.put(id, new WindowStats(id, peer.cwnd, peer.ssthresh, peer.inFlight, peer.backlog.size()));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Link state shared with one peer : the messages sent to it and waiting for
+     * an acknowledgement, the congestion window and backlog limiting them, and
+     * the sequence numbers received from it. The window and backlog are guarded
+     * by the peer lock.
+     */
+    private static class Peer {
+        private final int id;
+        private final AtomicInteger nextSeq = new AtomicInteger(0);
+        private final ConcurrentHashMap<Integer, Outstanding> outstanding = new ConcurrentHashMap<Integer, Outstanding>();
+        private int cumAcked = 0;
+        private final ReceiveWindow window = new ReceiveWindow();
+        // highest acknowledgement sent on its own
+        private final AtomicInteger lastAckSent = new AtomicInteger(0);
+        // highest piggybacked acknowledgement known to have reached the peer
+        private final AtomicInteger ackConfirmed = new AtomicInteger(0);
+        private final AtomicBoolean ackScheduled = new AtomicBoolean(false);
+        private final RttEstimator rtt = new RttEstimator(WHEEL_TICK);
+        private double cwnd = INITIAL_CWND;
+        private double ssthresh = MAX_CWND;
+        private int inFlight = 0;
+        private int recoverySeq = 0;
+        private final SendBacklog backlog;
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+
+        public Peer(int id, int backlogCapacity) {
+            this.id = id;
+            this.backlog = new SendBacklog(backlogCapacity);
+        }
+    }
+
+    /**
+     * A message waiting for its acknowledgement.
+     */
+    private static class Outstanding {
+        private final Message msg;
+        private final HostIP dest;
+        private final int seq;
+        private volatile TimingWheel.Timeout<Outstanding> timeout;
+        private volatile int transmissions = 0;
+        // acknowledgement piggybacked on the last transmission
+        private volatile int ackSeq;
+        private volatile long sentAt;
+
+        public Outstanding(Message msg, HostIP dest, int seq) {
+            this.msg = msg;
+            this.dest = dest;
+            this.seq = seq;
+        }
+    }
+
 }
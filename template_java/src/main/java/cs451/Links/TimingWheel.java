@@ -0,0 +1,183 @@
+package cs451.Links;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
+
+import cs451.utils.Execution;
+
+/**
+ * Hashed timing wheel. Time is cut into ticks and a timeout due at tick t is
+ * stored in slot t modulo the wheel size, so arming and cancelling are O(1)
+ * whatever the number of pending timeouts. Timeouts further away than one
+ * rotation simply stay in their slot until their tick comes.
+ *
+ * The wheel does not own a thread : it ticks on the given scheduler, and only
+ * while timeouts are pending. All the timeouts expiring on a tick are handed
+ * to the expiry handler in one list.
+ * A timeout armed while its slot is being swept may fire one rotation late.
+ *
+ * @param <T> the type of the items timed
+ */
+public class TimingWheel<T> {
+
+    private static final int ARMED = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickNanos;
+    private final int mask;
+    private final List<ConcurrentLinkedQueue<Timeout<T>>> slots;
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<List<T>> onExpire;
+    private final long start = Execution.nanoTime();
+    private volatile long processedTick = 0;
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private final AtomicBoolean ticking = new AtomicBoolean(false);
+
+    /**
+     * Creates a timing wheel.
+     *
+     * @param tickMillis duration of a tick, the resolution of the wheel
+     * @param wheelSize  number of slots, rounded up to a power of two
+     * @param scheduler  scheduler running the ticks
+     * @param onExpire   handler called with the items expiring on a tick
+     */
+    public TimingWheel(long tickMillis, int wheelSize, ScheduledExecutorService scheduler,
+            Consumer<List<T>> onExpire) {
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mask = size - 1;
+        this.slots = new ArrayList<ConcurrentLinkedQueue<Timeout<T>>>(size);
+        for (int i = 0; i < size; i++) {
+            slots.add(new ConcurrentLinkedQueue<Timeout<T>>());
+        }
+        this.scheduler = scheduler;
+        this.onExpire = onExpire;
+    }
+
+    /**
+     * Arms a timeout for an item.
+     *
+     * @param item        the item to hand to the expiry handler
+     * @param delayMillis delay before expiry, rounded up to a whole tick
+     * @return the timeout, which can be cancelled
+     */
+    public Timeout<T> arm(T item, long delayMillis) {
+        long ticks = Math.max(1, (TimeUnit.MILLISECONDS.toNanos(delayMillis) + tickNanos - 1) / tickNanos);
+        long deadline = Math.max(currentTick() + ticks, processedTick + 1);
+        Timeout<T> timeout = new Timeout<T>(this, item, deadline);
+        pending.incrementAndGet();
+        slots.get((int) (deadline & mask)).add(timeout);
+        if (ticking.compareAndSet(false, true)) {
+            scheduler.schedule(this::tick, tickNanos, TimeUnit.NANOSECONDS);
+        }
+        return timeout;
+    }
+
+    /**
+     * Returns the number of armed timeouts that neither expired nor were
+     * cancelled.
+     *
+     * @return the number of pending timeouts
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    private long currentTick() {
+        return (Execution.nanoTime() - start) / tickNanos;
+    }
+
+    /**
+     * Sweeps every slot whose tick has passed since the last sweep, then
+     * schedules the next tick if timeouts are still pending.
+     */
+    private void tick() {
+        long now = currentTick();
+        long from = Math.max(processedTick + 1, now - mask);
+        List<T> expired = new ArrayList<T>();
+        for (long t = from; t <= now; t++) {
+            sweep(slots.get((int) (t & mask)), now, expired);
+        }
+        processedTick = now;
+        if (!expired.isEmpty()) {
+            try {
+                onExpire.accept(expired);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        ticking.set(false);
+        // an arm may have seen ticking still set, in which case it relies on us
+        if (pending.get() > 0 && ticking.compareAndSet(false, true)) {
+            scheduler.schedule(this::tick, tickNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void sweep(ConcurrentLinkedQueue<Timeout<T>> slot, long now, List<T> expired) {
+        List<Timeout<T>> later = null;
+        Timeout<T> timeout;
+        while ((timeout = slot.poll()) != null) {
+            if (timeout.deadline > now) {
+                if (later == null) {
+                    later = new ArrayList<Timeout<T>>();
+                }
+                later.add(timeout);
+            } else if (STATE.compareAndSet(timeout, ARMED, EXPIRED)) {
+                pending.decrementAndGet();
+                expired.add(timeout.item);
+            }
+        }
+        if (later != null) {
+            slot.addAll(later);
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater
+            .newUpdater(Timeout.class, "state");
+
+    /**
+     * A timeout armed on the wheel.
+     *
+     * @param <T> the type of the item timed
+     */
+    public static class Timeout<T> {
+        private final TimingWheel<T> wheel;
+        private final T item;
+        private final long deadline;
+        private volatile int state = ARMED;
+
+        private Timeout(TimingWheel<T> wheel, T item, long deadline) {
+            this.wheel = wheel;
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the timeout. The entry is dropped from its slot when the slot is
+         * next swept.
+         *
+         * @return true if the timeout had neither expired nor been cancelled
+         */
+        public boolean cancel() {
+            if (STATE.compareAndSet(this, ARMED, CANCELLED)) {
+                wheel.pending.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        public T getItem() {
+            return item;
+        }
+    }
+
+}
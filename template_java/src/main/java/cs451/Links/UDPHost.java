@@ -1,160 +1,106 @@
 package cs451.Links;
 
-import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.InetAddress;
-import java.net.SocketException;
-import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.SubmissionPublisher;
 import java.util.concurrent.Flow.Publisher;
-import java.util.concurrent.Flow.Subscriber;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 import cs451.Models.HostIP;
 import cs451.Models.Message;
 import cs451.Parser.Host;
+import cs451.utils.Metrics;
+import cs451.utils.Options;
 
 /**
- * Class representing a host in the network.
+ * Interface representing a host in the network.
+ * A host sends encoded messages as UDP datagrams and publishes every message it
+ * receives.
  */
-public class UDPHost implements Publisher<Message> {
-
-    private static final int MAX_PKT_SIZE = 65535;
-    private DatagramSocket socket;
-    private SubmissionPublisher<Message> publisher;
-    private final Logger logger = Logger.getLogger(UDPHost.class.getName());
-    private HostIP hostIP;
-
-    private AtomicBoolean running = new AtomicBoolean(false);
-
-    private ExecutorService executor;
+public interface UDPHost extends Publisher<Message> {
 
     /**
-     * Creates a host with a given port number and IP address.
-     * 
+     * Creates the host selected by the {@link Options#TRANSPORT} option.
+     *
      * @param host     Host object containing port number, IP address and id.
      * @param executor ExecutorService to run threads.
+     * @return the new host.
+     * @throws IllegalArgumentException if the transport is unknown
      */
-    public UDPHost(Host host, ExecutorService executor) {
-        if (host.getPort() < 0 || host.getPort() > 65535) {
-            System.err.println("Port number must be between 0 and 65535!");
-            return;
+    public static UDPHost create(Host host, ExecutorService executor) {
+        String transport = Options.getString(Options.TRANSPORT, "socket");
+        switch (transport) {
+            case "nio":
+                return new ChannelUDPHost(host, executor);
+            case "socket":
+                return new SocketUDPHost(host, executor);
+            default:
+                throw new IllegalArgumentException("Unknown transport " + transport + ", expected socket or nio");
         }
-
-        InetAddress address;
-
-        try {
-            address = InetAddress.getByName(host.getIp());
-        } catch (UnknownHostException e) {
-            System.err.println("IP address is not valid!");
-            running.set(false);
-            return;
-        } catch (SecurityException s) {
-            System.err.println("Cannot resolve address, SecurityException");
-            running.set(false);
-            return;
-        }
-
-        try {
-            socket = new DatagramSocket(host.getPort(), address);
-        } catch (SocketException e) {
-            e.printStackTrace();
-            running.set(false);
-            return;
-        } catch (SecurityException s) {
-            System.err.println("Cannot resolve Socket, SecurityException");
-            running.set(false);
-            return;
-        }
-        this.executor = executor;
-        publisher = new SubmissionPublisher<>(executor, 256);
-        hostIP = new HostIP(host);
-        running.set(true);
-        logger.setLevel(Level.OFF);
     }
 
     /**
-     * Sends a packet to the host.
-     * 
-     * @param packet DatagramPacket to send.
+     * Sends an encoded message to the given destination.
+     *
+     * @param buffer buffer holding the encoded message between its position and
+     *               limit.
+     * @param dest   destination of the message.
      */
-    public void send(DatagramPacket packet) {
-        logger.log(Level.INFO,
-                "Sending packet to " + packet.getAddress().getHostAddress() + ":" + packet.getPort()
-                        + " with length "
-                        + packet.getLength() + " and hashcode " + packet.hashCode());
-        try {
-            socket.send(packet);
-        } catch (IOException e) {
-            e.printStackTrace();
-            return;
-        }
-        return;
-    }
+    public abstract void send(ByteBuffer buffer, HostIP dest);
 
     /**
-     * Receives packets from the host.
+     * Starts receiving packets.
      */
-    public void receive() {
-        executor.submit(() -> {
-            while (running.get()) {
-                byte[] buf = new byte[MAX_PKT_SIZE];
-                DatagramPacket packet = new DatagramPacket(buf, buf.length);
-                try {
-                    socket.receive(packet);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    return;
-                }
-                logger.log(Level.INFO,
-                        "Received packet from " + packet.getAddress().getHostAddress() + ":" + packet.getPort()
-                                + " with length "
-                                + packet.getLength() + " and hashcode " + packet.hashCode());
-                Message msg = Message.fromBytes(packet.getData());
-                publisher.submit(msg);
-
-            }
-            return;
-        });
-
-    }
+    public abstract void receive();
 
     /**
      * Stops the host.
      */
-    public void stop() {
-        running.set(false);
-        socket.close();
-    }
+    public abstract void stop();
 
     /**
      * Returns the port number of the host.
-     * 
+     *
      * @return Port number of the host.
      */
-    public int getPort() {
-        return socket.getLocalPort();
-    }
+    public abstract int getPort();
 
     /**
      * Returns the IP address of the host.
-     * 
+     *
      * @return IP address of the host.
      */
-    public HostIP getHostIP() {
-        return hostIP;
-    }
+    public abstract HostIP getHostIP();
 
     /**
-     * Subscribes a subscriber to the publisher.
+     * Allocates a channel number for a link instance using this host. Every
+     * process builds its stacks in the same order, so the n-th link of one process
+     * talks to the n-th link of the others.
+     *
+     * @return a channel number unique to this host.
      */
-    @Override
-    public void subscribe(Subscriber<? super Message> subscriber) {
-        publisher.subscribe(subscriber);
-    }
+    public abstract int openChannel();
+
+    /**
+     * Returns the number of times a receive buffer had to be allocated because
+     * none was available, 0 for hosts that do not pool their buffers.
+     *
+     * @return number of receive buffer pool exhaustion events.
+     */
+    public abstract long getPoolExhaustions();
+
+    /**
+     * Returns the fill level of the rings handing received datagrams to the
+     * receive workers.
+     *
+     * @return one snapshot per receive worker, empty without workers.
+     */
+    public abstract List<RingStats> getReceiveRingStats();
+
+    /**
+     * Returns the registry of the metrics of the stack built on this host.
+     *
+     * @return the metrics of the stack.
+     */
+    public abstract Metrics getMetrics();
 
 }
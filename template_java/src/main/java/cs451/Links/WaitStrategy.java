@@ -0,0 +1,49 @@
+package cs451.Links;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a consumer waits for work, trading latency for CPU. Producers never
+ * signal the consumer, so every strategy keeps polling.
+ * BUSY_SPIN keeps the core busy and reacts fastest, YIELD spins and then lets
+ * other threads run, PARK spins, yields and then sleeps for PARK_NANOS.
+ */
+public enum WaitStrategy {
+    BUSY_SPIN, YIELD, PARK;
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long PARK_NANOS = 50_000;
+
+    /**
+     * Waits before the next poll.
+     *
+     * @param idle number of consecutive polls that found no work
+     */
+    public void idle(int idle) {
+        if (this == BUSY_SPIN || idle < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (this == YIELD || idle < YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * Returns the strategy of the given name, ignoring case.
+     *
+     * @param name name of the strategy
+     * @return the strategy
+     * @throws IllegalArgumentException if no strategy has this name
+     */
+    public static WaitStrategy of(String name) {
+        for (WaitStrategy strategy : values()) {
+            if (strategy.name().equalsIgnoreCase(name.replace('-', '_'))) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown wait strategy " + name + ", expected busy-spin, yield or park");
+    }
+
+}
@@ -0,0 +1,60 @@
+package cs451.Links;
+
+/**
+ * Snapshot of the congestion window of a link to one peer.
+ */
+public class WindowStats {
+
+    private final int peerId;
+    private final double cwnd;
+    private final double ssthresh;
+    private final int inFlight;
+    private final int backlog;
+
+    public WindowStats(int peerId, double cwnd, double ssthresh, int inFlight, int backlog) {
+        this.peerId = peerId;
+        this.cwnd = cwnd;
+        this.ssthresh = ssthresh;
+        this.inFlight = inFlight;
+        this.backlog = backlog;
+    }
+
+    public int getPeerId() {
+        return peerId;
+    }
+
+    /**
+     * @return the number of messages allowed in flight
+     */
+    public double getCwnd() {
+        return cwnd;
+    }
+
+    /**
+     * @return the window size above which it grows linearly
+     */
+    public double getSsthresh() {
+        return ssthresh;
+    }
+
+    /**
+     * @return the number of messages sent and not yet acknowledged
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return the number of messages waiting for room in the window
+     */
+    public int getBacklog() {
+        return backlog;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("peer %d : cwnd %.1f, ssthresh %.1f, in flight %d, backlog %d", peerId, cwnd,
+                ssthresh, inFlight, backlog);
+    }
+
+}
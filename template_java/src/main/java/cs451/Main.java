@@ -3,7 +3,9 @@ package cs451;
 import cs451.Parser.Host;
 import cs451.Parser.Parser;
 import cs451.utils.Applications;
+import cs451.utils.Latency;
 import cs451.utils.Log;
+import cs451.utils.Metrics;
 
 public class Main {
 
@@ -13,7 +15,11 @@ public class Main {
 
         // write/flush output file if necessary
         System.out.println("Writing output.");
-        Log.flush();
+        Log.close();
+        Metrics.close();
+        if (Latency.isEnabled()) {
+            System.out.print(Latency.report());
+        }
 
     }
 
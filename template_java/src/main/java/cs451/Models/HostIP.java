@@ -1,27 +1,73 @@
 package cs451.Models;
 
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
-import java.util.HashSet;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import cs451.Parser.Host;
 
 public class HostIP implements Serializable {
+
+    private static final int RESOLVERS = 16;
+
     private InetAddress address;
     private int port;
     private int id;
+    private InetSocketAddress socketAddress;
+    private final transient MessageIds messageIds;
 
+    /**
+     * @param host the host to resolve
+     * @throws UncheckedIOException if the address of the host cannot be
+     *                              resolved
+     */
     public HostIP(Host host) {
         try {
             this.address = InetAddress.getByName(host.getIp());
-        } catch (Exception e) {
-            e.printStackTrace();
+        } catch (UnknownHostException e) {
+            throw new UncheckedIOException("Cannot resolve the address of host " + host.getId(), e);
         }
         this.port = host.getPort();
         this.id = host.getId();
+        this.socketAddress = new InetSocketAddress(address, port);
+        this.messageIds = new MessageIds(id);
+    }
+
+    /**
+     * Returns the host of the directory with the id of the given host.
+     *
+     * @param host host read from the hosts file
+     * @return the host with this id
+     * @throws IllegalStateException if the directory has no host with this id
+     */
+    public static HostIP of(Host host) {
+        HostIP known = byId(host.getId());
+        if (known == null) {
+            throw new IllegalStateException("Host " + host.getId() + " is not in the directory");
+        }
+        return known;
+    }
+
+    /**
+     * Returns the host of the directory with the given process id.
+     *
+     * @param id the process id
+     * @return the host with this id, or null if no such host is known
+     */
+    public static HostIP byId(int id) {
+        return PeerTable.directory().get(id);
     }
 
     public InetAddress getAddress() {
@@ -36,6 +82,25 @@ public class HostIP implements Serializable {
         return id;
     }
 
+    /**
+     * Returns the generator of the ids of the messages this process creates.
+     *
+     * @return the message id generator of the process
+     */
+    public MessageIds getMessageIds() {
+        return messageIds;
+    }
+
+    /**
+     * Returns the socket address of the host, resolved once when the host was
+     * created.
+     *
+     * @return the address and port of the host
+     */
+    public InetSocketAddress getSocketAddress() {
+        return socketAddress;
+    }
+
     public String toString() {
         return address.getHostAddress().toString() + ":" + port;
     }
@@ -47,21 +112,51 @@ public class HostIP implements Serializable {
         if (!(obj instanceof HostIP))
             return false;
         HostIP ip = (HostIP) obj;
-        return this.address.equals(ip.getAddress()) && this.port == ip.getPort() && this.id == ip.getId();
+        return this.id == ip.getId() && this.port == ip.getPort() && this.address.equals(ip.getAddress());
     }
 
+    /**
+     * Process ids are unique, so the id alone is a perfect hash.
+     */
     @Override
     public int hashCode() {
-        return Objects.hash(address, port, id);
+        return id;
     }
 
+    /**
+     * Resolves the hosts of the given list, in parallel so that large
+     * configurations do not wait for one lookup after the other. The directory is
+     * not modified, see {@link PeerTable#initialize(Collection)}.
+     *
+     * @param hosts hosts read from the hosts file
+     * @return the resolved hosts, ordered by id
+     * @throws UncheckedIOException  if a host cannot be resolved
+     * @throws IllegalStateException if interrupted while resolving
+     */
     public static Set<HostIP> fromHosts(List<Host> hosts) {
-        Set<HostIP> ipAddresses = new HashSet<HostIP>();
-        for (Host host : hosts) {
-            HostIP ip = new HostIP(host);
-            ipAddresses.add(ip);
+        List<Host> sorted = new ArrayList<Host>(hosts);
+        sorted.sort(Comparator.comparingInt(Host::getId));
+        Set<HostIP> resolved = new LinkedHashSet<HostIP>();
+        ExecutorService resolvers = Executors.newFixedThreadPool(Math.max(1, Math.min(sorted.size(), RESOLVERS)));
+        try {
+            List<Future<HostIP>> futures = new ArrayList<Future<HostIP>>();
+            for (Host host : sorted) {
+                futures.add(resolvers.submit(() -> new HostIP(host)));
+            }
+            for (Future<HostIP> future : futures) {
+                resolved.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Cannot resolve the hosts", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while resolving the hosts", e);
+        } finally {
+            resolvers.shutdown();
         }
-        return ipAddresses;
-
+        return resolved;
     }
 }
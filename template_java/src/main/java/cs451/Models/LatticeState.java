@@ -1,6 +1,7 @@
 package cs451.Models;
 
 import java.io.Serializable;
+import java.util.BitSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -12,8 +13,9 @@ public class LatticeState implements Serializable {
     private int activePropose = 0;
     private Set<Integer> proposedValues = ConcurrentHashMap.newKeySet();
     private Set<Integer> acceptedValues = ConcurrentHashMap.newKeySet();
-    private Set<HostIP> hasAcked = ConcurrentHashMap.newKeySet();
-    private Set<HostIP> hasNacked = ConcurrentHashMap.newKeySet();
+    // ids of the hosts that answered the active proposal, guarded by this
+    private final BitSet hasAcked = new BitSet();
+    private final BitSet hasNacked = new BitSet();
 
     public LatticeState(Integer slot, Set<Integer> proposedValues) {
         this.slot = slot;
@@ -78,24 +80,24 @@ public class LatticeState implements Serializable {
         resetHasNacked();
     }
 
-    public void addAck(HostIP host) {
-        this.hasAcked.add(host);
+    public synchronized void addAck(HostIP host) {
+        this.hasAcked.set(host.getId());
     }
 
-    public void resetHasAcked() {
+    public synchronized void resetHasAcked() {
         this.hasAcked.clear();
     }
 
-    public void addNack(HostIP host) {
-        this.hasNacked.add(host);
+    public synchronized void addNack(HostIP host) {
+        this.hasNacked.set(host.getId());
     }
 
-    public void resetHasNacked() {
+    public synchronized void resetHasNacked() {
         this.hasNacked.clear();
     }
 
-    public boolean hasResponded(HostIP host) {
-        return this.hasAcked.contains(host) || this.hasNacked.contains(host);
+    public synchronized boolean hasResponded(HostIP host) {
+        return this.hasAcked.get(host.getId()) || this.hasNacked.get(host.getId());
     }
 
 }
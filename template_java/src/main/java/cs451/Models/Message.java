@@ -1,10 +1,5 @@
 package cs451.Models;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
@@ -13,11 +8,15 @@ import java.util.Objects;
 /**
  * Represents a message that can be sent between processes in a distributed
  * system.
+ * The encoded form of the message is computed on first use and cached, so
+ * retransmissions and wrapping layers do not encode it again. Only
+ * {@link #setMetadata(Metadata)} invalidates it.
  */
 public class Message implements Serializable {
 
     private Metadata metadata;
     private byte[] data;
+    private transient volatile byte[] encoded;
 
     /**
      * Constructs a new Message object with the given parameters.
@@ -34,43 +33,37 @@ public class Message implements Serializable {
 
     /**
      * Converts the message to a byte array for transmission over the network.
+     * The array is cached and shared, it must not be modified.
      *
      * @return the message as a byte array
      */
     public byte[] toBytes() {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutputStream outputStream;
-        try {
-            outputStream = new ObjectOutputStream(bos);
-            outputStream.writeObject(this);
-            outputStream.flush();
-            outputStream.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+        byte[] bytes = encoded;
+        if (bytes == null) {
+            bytes = MessageCodec.encode(this).array();
+            encoded = bytes;
         }
-        byte[] metadataBytes = bos.toByteArray();
-        return metadataBytes;
+        return bytes;
+    }
+
+    /**
+     * Returns the cached encoding of the message, if it was computed.
+     *
+     * @return the encoded message, or null
+     */
+    byte[] cachedEncoding() {
+        return encoded;
     }
 
     /**
      * Converts a byte array received over the network back into a Message object.
      *
      * @param bytes the byte array to convert
-     * @return the Message object represented by the byte array
+     * @return the Message object represented by the byte array, or null if the
+     *         bytes are not a valid encoding
      */
     public static Message fromBytes(byte[] bytes) {
-        ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
-        try {
-            ObjectInputStream inputStream = new ObjectInputStream(bis);
-            Message msg = (Message) inputStream.readObject();
-            return msg;
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-        }
-        return null;
-
+        return MessageCodec.decode(bytes, 0, bytes.length);
     }
 
     /**
@@ -96,7 +89,7 @@ public class Message implements Serializable {
      *
      * @return the ID of the message
      */
-    public int getId() {
+    public long getId() {
         return metadata.getId();
     }
 
@@ -123,9 +116,9 @@ public class Message implements Serializable {
      *
      * @return the ID of the message that this message is acknowledging
      */
-    public int getAckedId() {
+    public long getAckedId() {
         ByteBuffer buffer = ByteBuffer.wrap(data);
-        int ackedId = buffer.getInt();
+        long ackedId = buffer.getLong();
         return ackedId;
     }
 
@@ -138,6 +131,95 @@ public class Message implements Serializable {
         return metadata.getSeqNum();
     }
 
+    /**
+     * Returns the link channel the message was sent on.
+     *
+     * @return the link channel of the message
+     */
+    public int getChannel() {
+        return metadata.getChannel();
+    }
+
+    /**
+     * Returns the per-peer sequence number given by the stubborn link.
+     *
+     * @return the link sequence number of the message
+     */
+    public int getLinkSeq() {
+        return metadata.getLinkSeq();
+    }
+
+    /**
+     * Returns the cumulative acknowledgement piggybacked on the message.
+     *
+     * @return the piggybacked cumulative acknowledgement, 0 if none
+     */
+    public int getAckSeq() {
+        return metadata.getAckSeq();
+    }
+
+    /**
+     * Returns the time the message was broadcast at its origin, in microseconds
+     * since the epoch.
+     *
+     * @return the broadcast time, 0 if the message is not sampled for latency
+     *         tracing
+     */
+    public long getOriginTime() {
+        return metadata.getOriginTime();
+    }
+
+    /**
+     * Returns a copy of this message carrying the given origin broadcast time.
+     * The payload is shared with this message.
+     *
+     * @param originTime the broadcast time in epoch microseconds
+     * @return the stamped message
+     */
+    public Message withOriginTime(long originTime) {
+        return derive(metadata.withOriginTime(originTime));
+    }
+
+    /**
+     * Returns a copy of this message carrying the given link level fields. The
+     * payload is shared with this message.
+     *
+     * @param channel the link channel
+     * @param linkSeq the link sequence number
+     * @param ackSeq  the piggybacked cumulative acknowledgement
+     * @return the message to transmit
+     */
+    public Message withLink(int channel, int linkSeq, int ackSeq) {
+        return derive(metadata.withLink(channel, linkSeq, ackSeq));
+    }
+
+    /**
+     * Returns a copy of this message addressed to the given destination, with a
+     * new id. The encoding of this message is computed once and reused for every
+     * destination, only the header is rewritten.
+     *
+     * @param dest the destination of the copy
+     * @return the new message
+     */
+    public Message withDestination(HostIP dest) {
+        toBytes();
+        Metadata copy = new Metadata(getType(), getSenderId(), dest.getId(), getSeqNum(), getSenderHostIP(), dest);
+        return derive(copy.withOriginTime(getOriginTime()));
+    }
+
+    /**
+     * Returns a message with the same data and the given metadata, deriving its
+     * encoding from the cached encoding of this message if there is one.
+     */
+    private Message derive(Metadata derivedMetadata) {
+        Message derived = new Message(derivedMetadata, data);
+        byte[] bytes = encoded;
+        if (bytes != null) {
+            derived.encoded = MessageCodec.rewriteHeader(bytes, derived);
+        }
+        return derived;
+    }
+
     /**
      * Returns the address of the process that sent the message.
      *
@@ -162,8 +244,8 @@ public class Message implements Serializable {
      * @return the payload of an acknowledgement message for this message
      */
     public byte[] ackPayload() {
-        ByteBuffer buffer = ByteBuffer.allocate(4);
-        buffer.putInt(getId());
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putLong(getId());
         return buffer.array();
     }
 
@@ -174,6 +256,7 @@ public class Message implements Serializable {
     public Metadata setMetadata(Metadata metadata) {
         Metadata oldMetadata = this.metadata;
         this.metadata = metadata;
+        encoded = null;
         return oldMetadata;
     }
 
@@ -0,0 +1,230 @@
+package cs451.Models;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-layout binary encoding of a {@link Message}, used on the wire instead
+ * of Java serialization.
+ *
+ * Layout (big endian):
+ *
+ * <pre>
+ * byte   version
+ * byte   type        (MsgType ordinal, high bit set if originTime follows)
+ * short  senderId    (unsigned)
+ * short  recieverId  (unsigned, 0 when there is no specific reciever)
+ * byte   channel     (link instance of the sender)
+ * long   id          (creating process id and counter, see MessageIds)
+ * int    seqNum
+ * int    linkSeq     (per-peer link sequence number, 0 if unsequenced)
+ * int    ackSeq      (piggybacked cumulative acknowledgement, 0 if none)
+ * long   originTime  (origin broadcast time in epoch microseconds, only in
+ *                     the frames of messages sampled for latency tracing)
+ * int    payload length
+ * byte[] payload
+ * </pre>
+ *
+ * Host addresses are not encoded : they are resolved from the process ids on
+ * decoding (see {@link HostIP#byId(int)}). Frames whose ids are not in the
+ * directory are rejected there, so the layers above can index their per-peer
+ * arrays with the ids of the messages they receive. A frame is self-delimiting, so
+ * several frames can be read back to back from the same buffer.
+ */
+public class MessageCodec {
+
+    public static final byte VERSION = 5;
+    // size of a header without originTime, such as those of ACKs and batches
+    public static final int HEADER_SIZE = 1 + 1 + 2 + 2 + 1 + 8 + 4 + 4 + 4 + 4;
+    private static final int ORIGIN_TIME_SIZE = 8;
+    private static final int ORIGIN_TIME_FLAG = 0x80;
+    // offset of the seqNum field in a frame
+    public static final int SEQ_NUM_OFFSET = 1 + 1 + 2 + 2 + 1 + 8;
+    // offset of the ackSeq field in a frame
+    public static final int ACK_SEQ_OFFSET = 1 + 1 + 2 + 2 + 1 + 8 + 4 + 4;
+    private static final MsgType[] TYPES = MsgType.values();
+
+    private MessageCodec() {
+    }
+
+    /**
+     * Returns the number of bytes needed to encode the given message.
+     *
+     * @param m the message to encode
+     * @return the size of the encoded message in bytes
+     */
+    public static int encodedSize(Message m) {
+        return headerSize(m.getOriginTime()) + m.getData().length;
+    }
+
+    private static int headerSize(long originTime) {
+        return originTime != 0 ? HEADER_SIZE + ORIGIN_TIME_SIZE : HEADER_SIZE;
+    }
+
+    /**
+     * Encodes the message at the current position of the buffer and advances the
+     * position past the encoded frame.
+     *
+     * @param m   the message to encode
+     * @param out the buffer to write into, must have at least
+     *            {@link #encodedSize(Message)} bytes remaining
+     */
+    public static void encode(Message m, ByteBuffer out) {
+        byte[] cached = m.cachedEncoding();
+        if (cached != null) {
+            out.put(cached);
+            return;
+        }
+        byte[] data = m.getData();
+        encodeHeader(out, m.getType(), m.getSenderId(), m.getRecieverId(), m.getChannel(), m.getId(), m.getSeqNum(),
+                m.getLinkSeq(), m.getAckSeq(), m.getOriginTime(), data.length);
+        out.put(data);
+    }
+
+    /**
+     * Writes a frame header at the current position of the buffer. The caller is
+     * responsible for writing the payload of the given length right after it.
+     * The header takes {@link #HEADER_SIZE} bytes, and 8 more if it carries an
+     * origin time.
+     *
+     * @param out        the buffer to write into
+     * @param type       the type of the message
+     * @param senderId   the ID of the process that sent the message
+     * @param recieverId the ID of the process that should receive the message
+     * @param channel    the link channel
+     * @param id         the ID of the message
+     * @param seqNum     the sequence number of the message
+     * @param linkSeq    the link sequence number
+     * @param ackSeq     the piggybacked cumulative acknowledgement
+     * @param originTime the origin broadcast time, 0 if not sampled
+     * @param length     the length of the payload
+     */
+    public static void encodeHeader(ByteBuffer out, MsgType type, int senderId, int recieverId, int channel, long id,
+            int seqNum, int linkSeq, int ackSeq, long originTime, int length) {
+        out.put(VERSION);
+        out.put((byte) (originTime != 0 ? type.ordinal() | ORIGIN_TIME_FLAG : type.ordinal()));
+        out.putShort((short) senderId);
+        out.putShort((short) recieverId);
+        out.put((byte) channel);
+        out.putLong(id);
+        out.putInt(seqNum);
+        out.putInt(linkSeq);
+        out.putInt(ackSeq);
+        if (originTime != 0) {
+            out.putLong(originTime);
+        }
+        out.putInt(length);
+    }
+
+    /**
+     * Returns a copy of an encoded frame with its header rewritten for the given
+     * message, which must have the same payload. The payload is copied as is
+     * instead of being encoded again.
+     *
+     * @param frame   an encoded frame with the payload of the message
+     * @param message the message whose header to write
+     * @return the encoded message
+     */
+    public static byte[] rewriteHeader(byte[] frame, Message message) {
+        int length = message.getData().length;
+        ByteBuffer out = ByteBuffer.allocate(encodedSize(message));
+        encodeHeader(out, message.getType(), message.getSenderId(), message.getRecieverId(), message.getChannel(),
+                message.getId(), message.getSeqNum(), message.getLinkSeq(), message.getAckSeq(),
+                message.getOriginTime(), length);
+        out.put(frame, frame.length - length, length);
+        return out.array();
+    }
+
+    /**
+     * Overwrites the piggybacked acknowledgement of a frame already written to a
+     * buffer.
+     *
+     * @param out        the buffer holding the frame
+     * @param frameStart the index of the first byte of the frame in the buffer
+     * @param ackSeq     the piggybacked cumulative acknowledgement
+     */
+    public static void patchAckSeq(ByteBuffer out, int frameStart, int ackSeq) {
+        out.putInt(frameStart + ACK_SEQ_OFFSET, ackSeq);
+    }
+
+    /**
+     * Encodes the message into a new heap buffer, ready to be read.
+     *
+     * @param m the message to encode
+     * @return a flipped buffer containing exactly the encoded message
+     */
+    public static ByteBuffer encode(Message m) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(m));
+        encode(m, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decodes one frame starting at the current position of the buffer and
+     * advances the position past it. The payload is copied out of the buffer, so
+     * the buffer can be reused afterwards.
+     *
+     * @param in the buffer to read from
+     * @return the decoded message, or null if the frame is malformed or its
+     *         sender or reciever is not in the directory
+     */
+    public static Message decode(ByteBuffer in) {
+        try {
+            if (in.get() != VERSION) {
+                return null;
+            }
+            int flags = Byte.toUnsignedInt(in.get());
+            int type = flags & ~ORIGIN_TIME_FLAG;
+            int senderId = Short.toUnsignedInt(in.getShort());
+            int recieverId = Short.toUnsignedInt(in.getShort());
+            int channel = Byte.toUnsignedInt(in.get());
+            long id = in.getLong();
+            int seqNum = in.getInt();
+            int linkSeq = in.getInt();
+            int ackSeq = in.getInt();
+            long originTime = (flags & ORIGIN_TIME_FLAG) != 0 ? in.getLong() : 0;
+            int length = in.getInt();
+            if (type < 0 || type >= TYPES.length || length < 0 || length > in.remaining()) {
+                return null;
+            }
+            HostIP sender = HostIP.byId(senderId);
+            HostIP reciever = HostIP.byId(recieverId);
+            if (sender == null || (recieverId != 0 && reciever == null)) {
+                return null;
+            }
+            byte[] data = new byte[length];
+            in.get(data);
+            Metadata metadata = new Metadata(TYPES[type], senderId, recieverId, id, seqNum, sender, reciever,
+                    channel, linkSeq, ackSeq, originTime);
+            return new Message(metadata, data);
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the sender id of a frame without decoding it.
+     *
+     * @param bytes  the array holding the frame
+     * @param offset the offset of the frame in the array
+     * @return the id of the process that sent the message
+     */
+    public static int peekSenderId(byte[] bytes, int offset) {
+        return ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    /**
+     * Decodes one frame from a region of a byte array.
+     *
+     * @param bytes  the array holding the frame
+     * @param offset the offset of the frame in the array
+     * @param length the number of valid bytes from the offset
+     * @return the decoded message, or null if the frame is malformed or its
+     *         sender or reciever is not in the directory
+     */
+    public static Message decode(byte[] bytes, int offset, int length) {
+        return decode(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+}
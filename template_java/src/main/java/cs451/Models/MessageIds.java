@@ -0,0 +1,58 @@
+package cs451.Models;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates the 64-bit message ids of a process : its id in the upper 16 bits
+ * and a counter in the lower 48. Ids are therefore unique across processes
+ * without any coordination.
+ * Each process has its own generator (see {@link HostIP#getMessageIds()}), so
+ * that several processes can run in the same JVM.
+ *
+ * Threads take the counter by blocks of BLOCK_SIZE values, so generating an id
+ * is a thread-local increment and threads only meet on the shared counter once
+ * per block.
+ */
+public class MessageIds {
+
+    private static final int PROCESS_SHIFT = 48;
+    private static final long COUNTER_MASK = (1L << PROCESS_SHIFT) - 1;
+    private static final int BLOCK_SIZE = 1024;
+    private final AtomicLong nextBlock = new AtomicLong(0);
+    private final ThreadLocal<long[]> block = ThreadLocal.withInitial(() -> new long[] { 0, 0 });
+    private final long processPrefix;
+
+    /**
+     * Creates the generator of a process.
+     *
+     * @param processId the id of the process, the prefix of every id generated
+     */
+    public MessageIds(int processId) {
+        processPrefix = (long) processId << PROCESS_SHIFT;
+    }
+
+    /**
+     * Returns a new message id.
+     *
+     * @return an id that was never returned before by any process
+     */
+    public long next() {
+        long[] range = block.get();
+        if (range[0] == range[1]) {
+            range[0] = nextBlock.getAndAdd(BLOCK_SIZE);
+            range[1] = range[0] + BLOCK_SIZE;
+        }
+        return processPrefix | (range[0]++ & COUNTER_MASK);
+    }
+
+    /**
+     * Returns the id of the process that created the message with the given id.
+     *
+     * @param id a message id
+     * @return the id of the process that generated it
+     */
+    public static int processOf(long id) {
+        return (int) (id >>> PROCESS_SHIFT);
+    }
+
+}
@@ -2,29 +2,38 @@ package cs451.Models;
 
 import java.io.Serializable;
 import java.util.Objects;
-import java.util.UUID;
 
 public class Metadata implements Serializable {
     private MsgType type;
     private int senderId;
     private int recieverId;
-    private int id;
+    private long id;
     private int seqNum;
     private HostIP senderHostIP;
     private HostIP recieverHostIP;
-
+    // link level fields, set by the stubborn link on the copies it transmits
+    private int channel;
+    private int linkSeq;
+    private int ackSeq;
+    // broadcast time at the origin in epoch microseconds, 0 unless sampled
+    private long originTime;
+
+    /**
+     * Creates the metadata of a new message, created by the sender process : its
+     * id is taken from the generator of the sender.
+     */
     public Metadata(MsgType type, int senderId, int recieverId, int seqNum, HostIP senderHostIP,
             HostIP recieverHostIP) {
         this.type = type;
         this.senderId = senderId;
         this.recieverId = recieverId;
-        this.id = UUID.randomUUID().hashCode();
+        this.id = senderHostIP.getMessageIds().next();
         this.seqNum = seqNum;
         this.senderHostIP = senderHostIP;
         this.recieverHostIP = recieverHostIP;
     }
 
-    private Metadata(MsgType type, int senderId, int recieverId, int id, int seqNum, HostIP senderHostIP,
+    Metadata(MsgType type, int senderId, int recieverId, long id, int seqNum, HostIP senderHostIP,
             HostIP recieverHostIP) {
         this.type = type;
         this.senderId = senderId;
@@ -35,6 +44,20 @@ public class Metadata implements Serializable {
         this.recieverHostIP = recieverHostIP;
     }
 
+    Metadata(MsgType type, int senderId, int recieverId, long id, int seqNum, HostIP senderHostIP,
+            HostIP recieverHostIP, int channel, int linkSeq, int ackSeq) {
+        this(type, senderId, recieverId, id, seqNum, senderHostIP, recieverHostIP);
+        this.channel = channel;
+        this.linkSeq = linkSeq;
+        this.ackSeq = ackSeq;
+    }
+
+    Metadata(MsgType type, int senderId, int recieverId, long id, int seqNum, HostIP senderHostIP,
+            HostIP recieverHostIP, int channel, int linkSeq, int ackSeq, long originTime) {
+        this(type, senderId, recieverId, id, seqNum, senderHostIP, recieverHostIP, channel, linkSeq, ackSeq);
+        this.originTime = originTime;
+    }
+
     public MsgType getType() {
         return type;
     }
@@ -47,7 +70,7 @@ public class Metadata implements Serializable {
         return recieverId;
     }
 
-    public int getId() {
+    public long getId() {
         return id;
     }
 
@@ -63,8 +86,74 @@ public class Metadata implements Serializable {
         return recieverHostIP;
     }
 
+    /**
+     * Returns the link channel the message was sent on, identifying the link
+     * instance of the sender it belongs to.
+     *
+     * @return the channel of the message
+     */
+    public int getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns the per-peer sequence number given by the stubborn link, 0 for
+     * messages that are not retransmitted.
+     *
+     * @return the link sequence number of the message
+     */
+    public int getLinkSeq() {
+        return linkSeq;
+    }
+
+    /**
+     * Returns the cumulative acknowledgement piggybacked on the message : every
+     * message from the reciever up to this link sequence number was received.
+     *
+     * @return the piggybacked cumulative acknowledgement, 0 if none
+     */
+    public int getAckSeq() {
+        return ackSeq;
+    }
+
+    /**
+     * Returns the time the message was broadcast at its origin, in microseconds
+     * since the epoch, if it was sampled for latency tracing (see
+     * cs451.utils.Latency).
+     *
+     * @return the broadcast time, 0 if the message is not sampled
+     */
+    public long getOriginTime() {
+        return originTime;
+    }
+
     public Metadata copy() {
-        return new Metadata(type, senderId, recieverId, id, seqNum, senderHostIP, recieverHostIP);
+        return new Metadata(type, senderId, recieverId, id, seqNum, senderHostIP, recieverHostIP, channel, linkSeq,
+                ackSeq, originTime);
+    }
+
+    /**
+     * Returns a copy of this metadata with the given link level fields.
+     *
+     * @param channel the link channel
+     * @param linkSeq the link sequence number
+     * @param ackSeq  the piggybacked cumulative acknowledgement
+     * @return the new metadata
+     */
+    public Metadata withLink(int channel, int linkSeq, int ackSeq) {
+        return new Metadata(type, senderId, recieverId, id, seqNum, senderHostIP, recieverHostIP, channel, linkSeq,
+                ackSeq, originTime);
+    }
+
+    /**
+     * Returns a copy of this metadata with the given origin broadcast time.
+     *
+     * @param originTime the broadcast time in epoch microseconds
+     * @return the new metadata
+     */
+    public Metadata withOriginTime(long originTime) {
+        return new Metadata(type, senderId, recieverId, id, seqNum, senderHostIP, recieverHostIP, channel, linkSeq,
+                ackSeq, originTime);
     }
 
     @Override
@@ -7,7 +7,8 @@ package cs451.Models;
  * The two possible message types are:
  * - ACK: a message sent to acknowledge receipt of a previous message
  * - DATA: a message containing data to be processed by the receiving process
+ * - BATCH: a link level datagram whose payload is several encoded messages
  */
 public enum MsgType {
-    ACK, DATA, HEARTBEAT, HEARTBEAT_ACK, PROPOSAL, NACK;
+    ACK, DATA, HEARTBEAT, HEARTBEAT_ACK, PROPOSAL, NACK, BATCH;
 }
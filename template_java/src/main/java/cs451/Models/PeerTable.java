@@ -0,0 +1,125 @@
+package cs451.Models;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable table of the processes, indexed by process id. Process ids are
+ * dense integers starting at 1, so a peer is found with an array access and
+ * per-peer state can be kept in arrays of {@link #capacity()} slots indexed by
+ * id instead of maps keyed by {@link HostIP}.
+ *
+ * The directory of every process is such a table, used to turn the ids carried
+ * by messages back into hosts. It is initialized from the parsed hosts before
+ * the stack is built and its processes never change afterwards, so the per-peer
+ * arrays sized by its capacity hold every id a decoded message can carry (see
+ * {@link MessageCodec#decode(java.nio.ByteBuffer)}).
+ */
+public class PeerTable {
+
+    private static volatile PeerTable directory = new PeerTable(new HostIP[1]);
+    private static boolean initialized = false;
+
+    // slot 0 is unused, process ids start at 1
+    private final HostIP[] byId;
+    private final List<HostIP> peers;
+
+    private PeerTable(HostIP[] byId) {
+        this.byId = byId;
+        List<HostIP> list = new ArrayList<HostIP>();
+        for (HostIP host : byId) {
+            if (host != null) {
+                list.add(host);
+            }
+        }
+        this.peers = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Builds the table of the given hosts.
+     *
+     * @param hosts the hosts
+     * @return the table of the hosts
+     */
+    public static PeerTable of(Collection<HostIP> hosts) {
+        int maxId = 0;
+        for (HostIP host : hosts) {
+            maxId = Math.max(maxId, host.getId());
+        }
+        HostIP[] byId = new HostIP[maxId + 1];
+        for (HostIP host : hosts) {
+            byId[host.getId()] = host;
+        }
+        return new PeerTable(byId);
+    }
+
+    /**
+     * Makes the table of the given hosts the directory. The processes are set
+     * once : initializing the directory again, as a new run in the same JVM
+     * does, must give the same hosts. Their new instances replace the previous
+     * ones, so that the message ids of the run start over.
+     *
+     * @param hosts every process, as resolved by {@link HostIP#fromHosts(List)}
+     * @return the directory
+     * @throws IllegalStateException if the directory holds other hosts
+     */
+    public static synchronized PeerTable initialize(Collection<HostIP> hosts) {
+        PeerTable table = of(hosts);
+        if (initialized && !directory.peers.equals(table.peers)) {
+            throw new IllegalStateException("The directory is already initialized with other hosts");
+        }
+        directory = table;
+        initialized = true;
+        return directory;
+    }
+
+    /**
+     * Returns the table of every process, empty until it is initialized.
+     *
+     * @return the directory
+     */
+    public static PeerTable directory() {
+        return directory;
+    }
+
+    /**
+     * Returns the host with the given process id.
+     *
+     * @param id the process id
+     * @return the host, or null if no host has this id
+     */
+    public HostIP get(int id) {
+        return id >= 0 && id < byId.length ? byId[id] : null;
+    }
+
+    /**
+     * Returns the number of slots an array indexed by the process ids of this
+     * table needs, that is the highest id plus one.
+     *
+     * @return the highest id plus one
+     */
+    public int capacity() {
+        return byId.length;
+    }
+
+    /**
+     * Returns the number of hosts in the table.
+     *
+     * @return the number of hosts
+     */
+    public int size() {
+        return peers.size();
+    }
+
+    /**
+     * Returns the hosts of the table, ordered by id.
+     *
+     * @return the hosts
+     */
+    public List<HostIP> getPeers() {
+        return peers;
+    }
+
+}
@@ -1,6 +1,7 @@
 package cs451.Models;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -33,6 +34,42 @@ public class Proposal implements Serializable {
         this.slot = slot;
     }
 
+    /**
+     * Encodes the proposal as : active proposal number, slot, number of values and
+     * the values themselves.
+     *
+     * @return the proposal as a byte array
+     */
+    public byte[] toBytes() {
+        Integer[] values = proposedValues.toArray(new Integer[0]);
+        ByteBuffer buffer = ByteBuffer.allocate(4 * (3 + values.length));
+        buffer.putInt(activePropose);
+        buffer.putInt(slot);
+        buffer.putInt(values.length);
+        for (Integer value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a proposal encoded with {@link #toBytes()}.
+     *
+     * @param bytes the encoded proposal
+     * @return the decoded proposal
+     */
+    public static Proposal fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int activePropose = buffer.getInt();
+        int slot = buffer.getInt();
+        int nbValues = buffer.getInt();
+        Set<Integer> values = new HashSet<Integer>(nbValues * 2);
+        for (int i = 0; i < nbValues; i++) {
+            values.add(buffer.getInt());
+        }
+        return new Proposal(activePropose, values, slot);
+    }
+
     @Override
     public String toString() {
         return "Proposal [activePropose=" + activePropose + ", slot=" + slot + ", proposedValues=" + proposedValues
@@ -0,0 +1,137 @@
+package cs451.Simulation;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A task due at a virtual time, run by the simulation on behalf of a process.
+ * Events are ordered by time, then by the order they were scheduled in, which
+ * makes a run deterministic. Periodic events are put back in the queue after
+ * each run.
+ */
+class Event implements ScheduledFuture<Object> {
+
+    private final Simulation simulation;
+    private final Callable<?> task;
+    private final long period;
+    final int owner;
+    long time;
+    long sequence;
+    private boolean cancelled = false;
+    private boolean done = false;
+    private Object result;
+    private Throwable failure;
+
+    /**
+     * Creates an event.
+     *
+     * @param simulation simulation running the event
+     * @param owner      process the event runs for, 0 for none
+     * @param time       virtual time of the first run, in nanoseconds
+     * @param period     nanoseconds between two runs, 0 to run once
+     * @param task       the task to run
+     */
+    Event(Simulation simulation, int owner, long time, long period, Callable<?> task) {
+        this.simulation = simulation;
+        this.owner = owner;
+        this.time = time;
+        this.period = period;
+        this.task = task;
+    }
+
+    /**
+     * Runs the task once.
+     *
+     * @return true if the event must run again after its period
+     */
+    boolean run() {
+        try {
+            Object value = task.call();
+            if (period == 0) {
+                result = value;
+                done = true;
+            }
+        } catch (Exception e) {
+            failure = e;
+            done = true;
+        }
+        if (done || cancelled) {
+            return false;
+        }
+        time += period;
+        return true;
+    }
+
+    /**
+     * Returns the exception thrown by the task, if it failed.
+     *
+     * @return the exception, null if the task did not fail
+     */
+    Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(time - simulation.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+        if (other instanceof Event) {
+            Event event = (Event) other;
+            int byTime = Long.compare(time, event.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, event.sequence);
+        }
+        return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (done || cancelled) {
+            return false;
+        }
+        cancelled = true;
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done || cancelled;
+    }
+
+    /**
+     * Returns the result of a completed event. The simulation runs on a single
+     * thread, so waiting for an event that did not run would never end.
+     *
+     * @throws IllegalStateException if the event did not run yet
+     */
+    @Override
+    public Object get() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (!done) {
+            throw new IllegalStateException("Waiting for a simulated event that did not run");
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return result;
+    }
+
+    @Override
+    public Object get(long timeout, TimeUnit unit) throws ExecutionException {
+        return get();
+    }
+
+}
@@ -0,0 +1,81 @@
+package cs451.Simulation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import cs451.utils.Metrics;
+import cs451.utils.Options;
+
+/**
+ * Network between the {@link SimulatedUDPHost}s of a simulation. Every datagram
+ * is dropped with probability {@link Options#SIM_LOSS}, or delivered after
+ * {@link Options#SIM_LATENCY_MICROS} plus a uniform random delay of up to
+ * {@link Options#SIM_JITTER_MICROS}. Datagrams and bytes sent, and datagrams
+ * lost, are counted in the metrics of the network so that protocol variants
+ * can be compared.
+ */
+public class Network {
+
+    private final Simulation simulation;
+    private final Map<Integer, SimulatedUDPHost> hosts = new HashMap<Integer, SimulatedUDPHost>();
+    private final long latencyNanos;
+    private final int jitterMicros;
+    private final double loss;
+    private final Metrics metrics = new Metrics();
+    private final LongAdder datagrams = metrics.counter("sim.datagrams");
+    private final LongAdder bytes = metrics.counter("sim.bytes");
+    private final LongAdder lost = metrics.counter("sim.lost");
+
+    /**
+     * Creates a network with the latency, jitter and loss given by the options.
+     *
+     * @param simulation simulation running the network
+     */
+    public Network(Simulation simulation) {
+        this.simulation = simulation;
+        latencyNanos = TimeUnit.MICROSECONDS.toNanos(Options.getInt(Options.SIM_LATENCY_MICROS, 500));
+        jitterMicros = Options.getInt(Options.SIM_JITTER_MICROS, 0);
+        loss = Options.getDouble(Options.SIM_LOSS, 0);
+    }
+
+    /**
+     * Returns the registry of the metrics of the network.
+     *
+     * @return the metrics of the network
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    void register(SimulatedUDPHost host) {
+        hosts.put(host.getHostIP().getId(), host);
+    }
+
+    /**
+     * Sends a datagram, which reaches its destination as an event of the
+     * destination unless it is lost.
+     *
+     * @param datagram the datagram, not modified afterwards
+     * @param dest     id of the destination process
+     */
+    void send(byte[] datagram, int dest) {
+        datagrams.increment();
+        bytes.add(datagram.length);
+        SimulatedUDPHost host = hosts.get(dest);
+        if (host == null || (loss > 0 && simulation.getRandom().nextDouble() < loss)) {
+            lost.increment();
+            return;
+        }
+        long delay = latencyNanos;
+        if (jitterMicros > 0) {
+            delay += TimeUnit.MICROSECONDS.toNanos(simulation.getRandom().nextInt(jitterMicros + 1));
+        }
+        simulation.schedule(dest, delay, 0, () -> {
+            host.deliver(datagram);
+            return null;
+        });
+    }
+
+}
@@ -0,0 +1,144 @@
+package cs451.Simulation;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import cs451.Links.RingStats;
+import cs451.Links.UDPHost;
+import cs451.Models.HostIP;
+import cs451.Models.Message;
+import cs451.Models.MessageCodec;
+import cs451.Parser.Host;
+import cs451.utils.Metrics;
+import cs451.utils.Pipeline;
+import cs451.utils.Trace;
+
+/**
+ * Host of a simulated process, sending its datagrams through the
+ * {@link Network} of the simulation. A received datagram is decoded and
+ * published during its event, the fused stack above handling it in the same
+ * event.
+ */
+public class SimulatedUDPHost implements UDPHost {
+
+    private final Logger logger = Logger.getLogger(SimulatedUDPHost.class.getName());
+    private final Network network;
+    private final SubmissionPublisher<Message> publisher;
+    private final HostIP hostIP;
+    private final int port;
+    private boolean receiving = false;
+    private int channels = 0;
+    private final Metrics metrics = new Metrics();
+
+    /**
+     * Creates a host and connects it to the network.
+     *
+     * @param host       Host object containing port number, IP address and id.
+     * @param simulation simulation the process runs in.
+     * @param network    network of the simulation.
+     */
+    public SimulatedUDPHost(Host host, Simulation simulation, Network network) {
+        this.network = network;
+        publisher = Pipeline.newPublisher(simulation.getExecutor());
+        hostIP = HostIP.of(host);
+        port = host.getPort();
+        logger.setLevel(Trace.LEVEL);
+        network.register(this);
+    }
+
+    /**
+     * Sends a copy of the encoded message through the network.
+     *
+     * @param buffer buffer holding the encoded message between its position and
+     *               limit.
+     * @param dest   destination of the message.
+     */
+    @Override
+    public void send(ByteBuffer buffer, HostIP dest) {
+        if (Trace.ENABLED) {
+            logger.log(Level.INFO, "Sending packet to " + dest + " with length " + buffer.remaining());
+        }
+        byte[] datagram = new byte[buffer.remaining()];
+        buffer.duplicate().get(datagram);
+        network.send(datagram, dest.getId());
+    }
+
+    void deliver(byte[] datagram) {
+        if (!receiving) {
+            return;
+        }
+        Message msg = MessageCodec.decode(datagram, 0, datagram.length);
+        if (msg == null) {
+            if (Trace.ENABLED) {
+                logger.log(Level.WARNING, "Dropping malformed packet");
+            }
+            return;
+        }
+        publisher.submit(msg);
+    }
+
+    /**
+     * Starts publishing received datagrams, those received before are dropped.
+     */
+    @Override
+    public void receive() {
+        receiving = true;
+    }
+
+    /**
+     * Stops publishing received datagrams.
+     */
+    @Override
+    public void stop() {
+        receiving = false;
+    }
+
+    /**
+     * Returns the port number of the host, which is never bound.
+     *
+     * @return Port number of the host.
+     */
+    @Override
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public HostIP getHostIP() {
+        return hostIP;
+    }
+
+    @Override
+    public int openChannel() {
+        return channels++;
+    }
+
+    @Override
+    public long getPoolExhaustions() {
+        return 0;
+    }
+
+    @Override
+    public List<RingStats> getReceiveRingStats() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Subscribes a subscriber to the publisher.
+     */
+    @Override
+    public void subscribe(Subscriber<? super Message> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+}
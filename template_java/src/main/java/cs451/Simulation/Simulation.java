@@ -0,0 +1,244 @@
+package cs451.Simulation;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import cs451.utils.Clock;
+import cs451.utils.Execution;
+import cs451.utils.Options;
+
+/**
+ * Discrete-event simulation running the stacks of many processes in virtual
+ * time on a single thread.
+ * Installed as the clock of the stacks (see {@link Execution#setClock(Clock)}),
+ * it replaces their executors and schedulers with one {@link VirtualScheduler}
+ * whose tasks are events of a queue ordered by virtual time. Running the
+ * simulation takes the events in order and jumps the clock to each of them, so
+ * a retransmission timeout of seconds costs one event. Tasks due right away,
+ * such as those handed to the executor, skip the queue and run first, in the
+ * order they were submitted. The network is
+ * simulated by {@link SimulatedUDPHost}s, whose datagrams are events too.
+ *
+ * Every event belongs to the process it was scheduled by, or that receives it
+ * for datagrams. Processes crash at the virtual times of the
+ * {@link Options#SIM_CRASHES} schedule and then stop : their events are
+ * dropped, including the datagrams sent to them.
+ *
+ * All random choices come from one generator seeded with
+ * {@link Options#SIM_SEED} and events due at the same time run in the order
+ * they were scheduled, so a run is reproducible as long as the stacks are
+ * built in the same order and do not read the system clock or their own
+ * random sources (latency sampling, see cs451.utils.Latency).
+ * Every stack keeps its state, metrics and message ids included, in its own
+ * objects, so simulations run one after the other in the same JVM do not see
+ * each other as long as each initializes the directory with new instances of
+ * the hosts (see cs451.Models.PeerTable#initialize).
+ * Nothing here is thread-safe : stacks must be built, and the simulation run,
+ * from a single thread, with the fused pipeline so that layers never hand
+ * messages to other threads.
+ *
+ * An event whose task throws fails the simulation : the run stops there
+ * instead of going on with a stack in an unknown state.
+ */
+public class Simulation implements Clock {
+
+    private final PriorityQueue<Event> events = new PriorityQueue<Event>();
+    // events due right away, run in order before the queue moves on
+    private final ArrayDeque<Event> ready = new ArrayDeque<Event>();
+    private final VirtualScheduler scheduler = new VirtualScheduler(this);
+    private final Random random;
+    private final BitSet crashed = new BitSet();
+    private long now = 0;
+    private long sequence = 0;
+    private long processed = 0;
+    // process whose event is running, 0 between events
+    private int current = 0;
+
+    /**
+     * Creates a simulation at virtual time 0, seeded and with the crash schedule
+     * given by the options.
+     */
+    public Simulation() {
+        random = new Random(Options.getInt(Options.SIM_SEED, 1));
+        String crashes = Options.getString(Options.SIM_CRASHES, "");
+        for (String crash : crashes.split(",")) {
+            if (crash.isBlank()) {
+                continue;
+            }
+            String[] fields = crash.strip().split("@");
+            try {
+                crash(Integer.parseInt(fields[0]), TimeUnit.MILLISECONDS.toNanos(Long.parseLong(fields[1])));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                System.err.println("Ignoring crash " + crash + ", expected id@millis");
+            }
+        }
+    }
+
+    /**
+     * Returns the virtual time.
+     *
+     * @return nanoseconds since the start of the simulation
+     */
+    @Override
+    public long nanoTime() {
+        return now;
+    }
+
+    /**
+     * Returns the scheduler of the simulation, shared by every timer.
+     *
+     * @return the virtual scheduler
+     */
+    @Override
+    public ScheduledExecutorService newScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Returns the executor to build the stacks with.
+     *
+     * @return the virtual scheduler
+     */
+    public ExecutorService getExecutor() {
+        return scheduler;
+    }
+
+    /**
+     * Returns the generator every random choice of the simulation is drawn
+     * from.
+     *
+     * @return the seeded generator
+     */
+    public Random getRandom() {
+        return random;
+    }
+
+    /**
+     * Runs a task right away on behalf of a process, such as building its stack
+     * or broadcasting : the events it schedules belong to the process.
+     *
+     * @param process id of the process
+     * @param task    the task to run
+     */
+    public void run(int process, Runnable task) {
+        int previous = current;
+        current = process;
+        try {
+            task.run();
+        } finally {
+            current = previous;
+        }
+    }
+
+    /**
+     * Schedules a task of the running process.
+     *
+     * @param delayNanos  delay before the first run
+     * @param periodNanos delay between two runs, 0 to run once
+     * @param task        the task to run
+     * @return the event, which can be cancelled
+     */
+    Event schedule(long delayNanos, long periodNanos, Callable<?> task) {
+        return schedule(current, delayNanos, periodNanos, task);
+    }
+
+    /**
+     * Schedules a task on behalf of a process.
+     *
+     * @param owner       process the task runs for, 0 for none
+     * @param delayNanos  delay before the first run
+     * @param periodNanos delay between two runs, 0 to run once
+     * @param task        the task to run
+     * @return the event, which can be cancelled
+     */
+    Event schedule(int owner, long delayNanos, long periodNanos, Callable<?> task) {
+        Event event = new Event(this, owner, now + Math.max(0, delayNanos), periodNanos, task);
+        event.sequence = sequence++;
+        if (delayNanos <= 0 && periodNanos == 0) {
+            ready.add(event);
+        } else {
+            events.add(event);
+        }
+        return event;
+    }
+
+    /**
+     * Crashes a process at the given virtual time.
+     *
+     * @param process   id of the process
+     * @param timeNanos virtual time of the crash
+     */
+    public void crash(int process, long timeNanos) {
+        schedule(0, timeNanos - now, 0, Executors.callable(() -> crashed.set(process)));
+    }
+
+    /**
+     * Returns whether a process crashed.
+     *
+     * @param process id of the process
+     * @return true if the process crashed
+     */
+    public boolean isCrashed(int process) {
+        return crashed.get(process);
+    }
+
+    /**
+     * Runs the events in order until none is left or the next one is due after
+     * the given virtual time.
+     *
+     * @param endNanos virtual time to stop at
+     * @return true if no event is left
+     * @throws IllegalStateException if the task of an event throws, the
+     *                               exception being its cause
+     */
+    public boolean runUntil(long endNanos) {
+        while (true) {
+            Event event = ready.poll();
+            if (event == null) {
+                event = events.peek();
+                if (event == null || event.time > endNanos) {
+                    break;
+                }
+                events.poll();
+            }
+            if (event.isCancelled() || (event.owner != 0 && crashed.get(event.owner))) {
+                continue;
+            }
+            now = event.time;
+            current = event.owner;
+            processed++;
+            boolean again = event.run();
+            current = 0;
+            if (event.getFailure() != null) {
+                throw new IllegalStateException("Event of process " + event.owner + " failed at "
+                        + TimeUnit.NANOSECONDS.toMillis(now) + " ms", event.getFailure());
+            }
+            if (again) {
+                event.sequence = sequence++;
+                events.add(event);
+            }
+        }
+        if (events.isEmpty()) {
+            return true;
+        }
+        now = Math.max(now, endNanos);
+        return false;
+    }
+
+    /**
+     * Returns the number of events run so far.
+     *
+     * @return the number of events
+     */
+    public long getProcessed() {
+        return processed;
+    }
+
+}
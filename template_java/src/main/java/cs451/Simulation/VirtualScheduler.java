@@ -0,0 +1,85 @@
+package cs451.Simulation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor and scheduler of every stack of a simulation. Tasks become events
+ * of the process running when they are submitted : executed tasks run at the
+ * current virtual time, after the events already due then, and delayed tasks
+ * at the current time plus their delay. Tasks take no virtual time, so fixed
+ * rate and fixed delay schedules are the same.
+ *
+ * The scheduler lives as long as the simulation, shutting it down does
+ * nothing.
+ */
+class VirtualScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private final Simulation simulation;
+
+    VirtualScheduler(Simulation simulation) {
+        this.simulation = simulation;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        simulation.schedule(0, 0, Executors.callable(command));
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return simulation.schedule(unit.toNanos(delay), 0, Executors.callable(command));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        @SuppressWarnings("unchecked")
+        ScheduledFuture<V> future = (ScheduledFuture<V>) (ScheduledFuture<?>) simulation.schedule(unit.toNanos(delay),
+                0, callable);
+        return future;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        return simulation.schedule(unit.toNanos(initialDelay), unit.toNanos(period), Executors.callable(command));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return scheduleAtFixedRate(command, initialDelay, delay, unit);
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return false;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return false;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return false;
+    }
+
+}
@@ -6,7 +6,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.stream.Stream;
 
 import cs451.Agreement.LatticeAgreement;
@@ -19,6 +18,7 @@ import cs451.Models.HostIP;
 import cs451.Models.Message;
 import cs451.Models.Metadata;
 import cs451.Models.MsgType;
+import cs451.Models.PeerTable;
 import cs451.Models.Proposal;
 import cs451.Parser.Host;
 import cs451.Parser.Parser;
@@ -39,18 +39,20 @@ public class Applications {
         List<Host> hosts = parser.hosts();
 
         Host myHost = hosts.get(parser.myId() - 1);
-        ExecutorService executor = Executors.newFixedThreadPool(8);
-        UDPHost myUDPHost = new UDPHost(myHost, executor);
+        resolveHosts(parser);
+        ExecutorService executor = Execution.newExecutor();
+        UDPHost myUDPHost = UDPHost.create(myHost, executor);
         myUDPHost.receive();
         HostIP myHostIP = myUDPHost.getHostIP();
 
         int[] config = readPerfectConfigFile(parser.config());
 
-        Log.logPath = Paths.get(parser.output());
+        Log.open(Paths.get(parser.output()));
+        Metrics.start(parser.output(), myUDPHost.getMetrics());
 
         int nbMsg = config[0];
         int recieverId = config[1];
-        Host recieverHost = hosts.get(recieverId - 1);
+        HostIP recieverIP = HostIP.byId(recieverId);
 
         PerfectLink perfectLink = new PerfectLink(myUDPHost, executor);
         perfectLink.activateLogging();
@@ -58,7 +60,6 @@ public class Applications {
         if (parser.myId() != recieverId) {
             for (int i = 1; i <= nbMsg; i++) {
                 byte[] data = Integer.toString(i).getBytes();
-                HostIP recieverIP = new HostIP(recieverHost);
                 Metadata metadata = new Metadata(MsgType.DATA, parser.myId(), recieverId, 0, myHostIP,
                         recieverIP);
                 Message msg = new Message(metadata, data);
@@ -72,16 +73,16 @@ public class Applications {
         List<Host> hosts = parser.hosts();
 
         Host myHost = hosts.get(parser.myId() - 1);
-        ExecutorService executor = Executors.newFixedThreadPool(8);
-        UDPHost myUDPHost = new UDPHost(myHost, executor);
+        Set<HostIP> destinations = resolveHosts(parser);
+        ExecutorService executor = Execution.newExecutor();
+        UDPHost myUDPHost = UDPHost.create(myHost, executor);
         myUDPHost.receive();
         HostIP myAddress = myUDPHost.getHostIP();
 
         int nbMsg = readFifoConfigFile(parser.config());
 
-        Log.logPath = Paths.get(parser.output());
-
-        Set<HostIP> destinations = HostIP.fromHosts(hosts);
+        Log.open(Paths.get(parser.output()));
+        Metrics.start(parser.output(), myUDPHost.getMetrics());
 
         BestEffortBroadcast beb = new BestEffortBroadcast(myUDPHost, destinations, executor);
         for (int i = 1; i <= nbMsg; i++) {
@@ -97,16 +98,16 @@ public class Applications {
         List<Host> hosts = parser.hosts();
 
         Host myHost = hosts.get(parser.myId() - 1);
-        ExecutorService executor = Executors.newFixedThreadPool(8);
-        UDPHost myUDPHost = new UDPHost(myHost, executor);
+        Set<HostIP> destinations = resolveHosts(parser);
+        ExecutorService executor = Execution.newExecutor();
+        UDPHost myUDPHost = UDPHost.create(myHost, executor);
         myUDPHost.receive();
         HostIP myHostIP = myUDPHost.getHostIP();
 
         int nbMsg = readFifoConfigFile(parser.config());
 
-        Log.logPath = Paths.get(parser.output());
-
-        Set<HostIP> destinations = HostIP.fromHosts(hosts);
+        Log.open(Paths.get(parser.output()));
+        Metrics.start(parser.output(), myUDPHost.getMetrics());
 
         FIFOBroadcast fb = new FIFOBroadcast(myUDPHost, destinations, executor);
         fb.activateLogging();
@@ -122,8 +123,9 @@ public class Applications {
         List<Host> hosts = parser.hosts();
 
         Host myHost = hosts.get(parser.myId() - 1);
-        ExecutorService executor = Executors.newFixedThreadPool(8);
-        UDPHost myUDPHost = new UDPHost(myHost, executor);
+        Set<HostIP> destinations = resolveHosts(parser);
+        ExecutorService executor = Execution.newExecutor();
+        UDPHost myUDPHost = UDPHost.create(myHost, executor);
         myUDPHost.receive();
         HostIP myHostIP = myUDPHost.getHostIP();
 
@@ -133,11 +135,11 @@ public class Applications {
         int vs = latticeConfig[1];
         int ds = latticeConfig[2];
 
-        Log.logPath = Paths.get(parser.output());
-
-        Set<HostIP> destinations = HostIP.fromHosts(hosts);
+        Log.open(Paths.get(parser.output()));
+        Metrics.start(parser.output(), myUDPHost.getMetrics());
 
         LatticeAgreement la = new LatticeAgreement(myUDPHost, executor, destinations);
+        la.activateLogging();
         for (int i = 1; i <= p; i++) {
             Set<Integer> proposedValues = Stream.of(config[i].split(" ")).map(x -> x.strip())
                     .mapToInt(Integer::parseInt)
@@ -149,6 +151,19 @@ public class Applications {
 
     }
 
+    /**
+     * Resolves every host once and makes them the directory, before the layers
+     * size their per-peer state.
+     *
+     * @param parser the parser holding the hosts
+     * @return every process
+     */
+    private static Set<HostIP> resolveHosts(Parser parser) {
+        Set<HostIP> destinations = HostIP.fromHosts(parser.hosts());
+        PeerTable.initialize(destinations);
+        return destinations;
+    }
+
     /**
      * Reads the configuration file at the given path and returns an array
      * containing the values of m and i.
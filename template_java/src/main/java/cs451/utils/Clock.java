@@ -0,0 +1,29 @@
+package cs451.utils;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Time source of the protocol stack : the clock read to measure round-trip
+ * times and arm timeouts, and the schedulers timers run on. The stack runs on
+ * the system clock unless another one is installed with
+ * {@link Execution#setClock(Clock)}, as a simulation does to run it in virtual
+ * time.
+ */
+public interface Clock {
+
+    /**
+     * Returns the current time of the clock, only meaningful relative to other
+     * readings of the same clock.
+     *
+     * @return the current time in nanoseconds
+     */
+    public long nanoTime();
+
+    /**
+     * Creates the scheduler of a timer, ticking on this clock.
+     *
+     * @return a scheduler
+     */
+    public ScheduledExecutorService newScheduler();
+
+}
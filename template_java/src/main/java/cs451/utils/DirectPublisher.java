@@ -0,0 +1,115 @@
+package cs451.utils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Publisher delivering items to its subscribers synchronously, on the thread
+ * calling {@link #submit(Object)}, instead of buffering them and handing them
+ * to the executor. Chaining layers through direct publishers turns the stack
+ * into plain method calls running on the thread that received the packet.
+ *
+ * Demand is not enforced : subscribers receive every item whatever they
+ * requested. A subscriber throwing from onNext is cancelled and receives the
+ * exception in onError.
+ * Nothing is locked : {@link #submit(Object)} must not be called by two threads
+ * at once, so that subscribers are never called by two threads at once either,
+ * as with SubmissionPublisher. A fused stack is fed by a single receiving
+ * thread (see Pipeline), and layers handing messages to other threads submit
+ * them under their own lock.
+ *
+ * @param <T> the type of the published items
+ */
+public class DirectPublisher<T> extends SubmissionPublisher<T> {
+
+    private final List<DirectSubscription> subscriptions = new CopyOnWriteArrayList<DirectSubscription>();
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a direct publisher. The executor is only kept to satisfy the
+     * SubmissionPublisher contract, items never go through it.
+     *
+     * @param executor the executor of the stack
+     */
+    public DirectPublisher(ExecutorService executor) {
+        super(executor, Flow.defaultBufferSize());
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        DirectSubscription subscription = new DirectSubscription(subscriber);
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * Delivers the item to every subscriber before returning.
+     *
+     * @param item the item to publish
+     * @return 0, as nothing is ever buffered
+     */
+    @Override
+    public int submit(T item) {
+        if (closed) {
+            throw new IllegalStateException("Closed");
+        }
+        for (DirectSubscription subscription : subscriptions) {
+            subscription.deliver(item);
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (DirectSubscription subscription : subscriptions) {
+            subscription.subscriber.onComplete();
+        }
+        subscriptions.clear();
+    }
+
+    @Override
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    @Override
+    public int getNumberOfSubscribers() {
+        return subscriptions.size();
+    }
+
+    private class DirectSubscription implements Subscription {
+        private final Subscriber<? super T> subscriber;
+
+        public DirectSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        private void deliver(T item) {
+            if (!subscriptions.contains(this)) {
+                return;
+            }
+            try {
+                subscriber.onNext(item);
+            } catch (RuntimeException e) {
+                cancel();
+                subscriber.onError(e);
+            }
+        }
+
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+            subscriptions.remove(this);
+        }
+    }
+
+}
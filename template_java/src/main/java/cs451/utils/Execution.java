@@ -0,0 +1,125 @@
+package cs451.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Builds the executors running the protocol stack, following the
+ * {@link Options#EXECUTOR} option.
+ * In "platform" mode (default), the tasks of a stack share a fixed pool of
+ * POOL_SIZE threads, and each timer runs on its own platform thread. A task
+ * blocking on a full socket buffer or on a full SubmissionPublisher holds one of
+ * the pool threads until it can go on.
+ * In "virtual" mode, every task runs on its own virtual thread and timers tick
+ * on virtual threads, so blocked tasks only park. Virtual threads are created
+ * through reflection so that the project still builds for Java 11; on a JDK
+ * without them (before 21, or 19 and 20 without --enable-preview) the platform
+ * executors are used instead. There is no separate build for a modern JDK :
+ * the same da_proc.jar, built for Java 11, runs on virtual threads when started
+ * with -Dcs451.executor=virtual on a JDK 21 runtime. Receive workers always use
+ * platform threads, as they poll their ring and would hold the carrier thread.
+ * Timers and time measurements follow the installed {@link Clock}, the system
+ * clock unless a simulation replaced it.
+ */
+public class Execution {
+
+    public static final int POOL_SIZE = 8;
+
+    private static final ThreadFactory VIRTUAL_FACTORY = isVirtual() ? virtualThreadFactory() : null;
+
+    // null for the system clock
+    private static volatile Clock clock = null;
+
+    private Execution() {
+    }
+
+    /**
+     * Installs the clock of the stacks built from now on, null for the system
+     * clock.
+     *
+     * @param clock the clock timers and time measurements follow
+     */
+    public static void setClock(Clock clock) {
+        Execution.clock = clock;
+    }
+
+    /**
+     * Returns the current time of the installed clock.
+     *
+     * @return the current time in nanoseconds
+     */
+    public static long nanoTime() {
+        Clock current = clock;
+        return current == null ? System.nanoTime() : current.nanoTime();
+    }
+
+    /**
+     * Returns whether virtual threads were requested.
+     *
+     * @return true if the stack should run on virtual threads
+     */
+    public static boolean isVirtual() {
+        return "virtual".equals(Options.getString(Options.EXECUTOR, "platform"));
+    }
+
+    /**
+     * Returns whether the stack actually runs on virtual threads, that is they
+     * were requested and the JDK provides them.
+     *
+     * @return true if new executors use virtual threads
+     */
+    public static boolean usesVirtualThreads() {
+        return VIRTUAL_FACTORY != null;
+    }
+
+    /**
+     * Creates the executor running the tasks of a stack.
+     *
+     * @return a virtual-thread-per-task executor, or a fixed pool of platform
+     *         threads
+     */
+    public static ExecutorService newExecutor() {
+        if (VIRTUAL_FACTORY != null) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                        .invoke(null, VIRTUAL_FACTORY);
+            } catch (ReflectiveOperationException e) {
+                e.printStackTrace();
+            }
+        }
+        return Executors.newFixedThreadPool(POOL_SIZE);
+    }
+
+    /**
+     * Creates the single-threaded scheduler of a timer, or a scheduler of the
+     * installed clock.
+     *
+     * @return a scheduler ticking on a virtual or a platform thread
+     */
+    public static ScheduledExecutorService newScheduler() {
+        Clock current = clock;
+        if (current != null) {
+            return current.newScheduler();
+        }
+        if (VIRTUAL_FACTORY != null) {
+            return Executors.newScheduledThreadPool(1, VIRTUAL_FACTORY);
+        }
+        return Executors.newScheduledThreadPool(1);
+    }
+
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.err.println("Virtual threads are not available on Java " + Runtime.version().feature()
+                    + ", using platform threads");
+            return null;
+        }
+    }
+
+}
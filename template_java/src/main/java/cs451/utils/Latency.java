@@ -0,0 +1,142 @@
+package cs451.utils;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import cs451.Models.Message;
+import cs451.Models.PeerTable;
+
+/**
+ * Broadcast-to-delivery latency tracing.
+ * One broadcast in {@link Options#LATENCY_SAMPLING} is stamped at its origin
+ * with the wall-clock time, carried in the message header. Every process
+ * delivering a stamped message records how long ago it was broadcast, per
+ * stage ("urb", "fifo") and per origin, and the percentiles are reported when
+ * the process stops. Wall clocks are compared across processes, so latencies
+ * are only meaningful between hosts with synchronized clocks, e.g. on the same
+ * machine.
+ *
+ * Messages that are not sampled carry 0 and cost a comparison at each stage.
+ */
+public class Latency {
+
+    public static final Stage URB = new Stage("urb");
+    public static final Stage FIFO = new Stage("fifo");
+    private static final Stage[] STAGES = { URB, FIFO };
+
+    private static final int SAMPLING = Options.getInt(Options.LATENCY_SAMPLING, 0);
+
+    private Latency() {
+    }
+
+    /**
+     * Returns whether broadcasts are sampled.
+     *
+     * @return true if latency tracing is on
+     */
+    public static boolean isEnabled() {
+        return SAMPLING > 0;
+    }
+
+    /**
+     * Stamps a message about to be broadcast by its origin with the current
+     * time, if it is sampled. A message already stamped by an upper layer keeps
+     * its time.
+     *
+     * @param m the message to broadcast
+     * @return the stamped message, or m if it is not sampled
+     */
+    public static Message stamp(Message m) {
+        if (SAMPLING <= 0 || m.getOriginTime() != 0 || ThreadLocalRandom.current().nextInt(SAMPLING) != 0) {
+            return m;
+        }
+        return m.withOriginTime(nowMicros());
+    }
+
+    /**
+     * Records the latency of a delivered message if it was stamped by its
+     * origin.
+     *
+     * @param stage the stage delivering the message, URB or FIFO
+     * @param m     the delivered message, whose sender is its origin
+     */
+    public static void record(Stage stage, Message m) {
+        long originTime = m.getOriginTime();
+        if (originTime == 0) {
+            return;
+        }
+        long latency = nowMicros() - originTime;
+        stage.histogram(m.getSenderId()).record(latency);
+        stage.all.record(latency);
+    }
+
+    /**
+     * Returns the latency percentiles of every stage with samples, over all
+     * origins and then by origin, one line each, in microseconds.
+     *
+     * @return the report, empty if nothing was sampled
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        for (Stage stage : STAGES) {
+            AtomicReferenceArray<Histogram> byOrigin = stage.byOrigin;
+            if (byOrigin == null) {
+                continue;
+            }
+            report.append(String.format("latency %s all : n=%d p50=%dus p99=%dus p99.9=%dus%n", stage.name,
+                    stage.all.getCount(), stage.all.getPercentile(50), stage.all.getPercentile(99),
+                    stage.all.getPercentile(99.9)));
+            for (int origin = 0; origin < byOrigin.length(); origin++) {
+                Histogram histogram = byOrigin.get(origin);
+                if (histogram == null) {
+                    continue;
+                }
+                report.append(String.format("latency %s origin %d : n=%d p50=%dus p99=%dus p99.9=%dus%n",
+                        stage.name, origin, histogram.getCount(), histogram.getPercentile(50),
+                        histogram.getPercentile(99), histogram.getPercentile(99.9)));
+            }
+        }
+        return report.toString();
+    }
+
+    private static long nowMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000 + now.getNano() / 1_000;
+    }
+
+    /**
+     * Delivery stage whose latency is traced. Its histograms are kept by origin
+     * id, along with their union.
+     */
+    public static class Stage {
+        private final String name;
+        private final Histogram all;
+        // created on first use, once the hosts are known
+        private volatile AtomicReferenceArray<Histogram> byOrigin;
+
+        private Stage(String name) {
+            this.name = name;
+            this.all = new Histogram();
+        }
+
+        private Histogram histogram(int origin) {
+            AtomicReferenceArray<Histogram> histograms = byOrigin;
+            if (histograms == null) {
+                synchronized (this) {
+                    if (byOrigin == null) {
+                        byOrigin = new AtomicReferenceArray<Histogram>(PeerTable.directory().capacity());
+                    }
+                    histograms = byOrigin;
+                }
+            }
+            Histogram histogram = histograms.get(origin);
+            if (histogram == null) {
+                histograms.compareAndSet(origin, null, new Histogram());
+                histogram = histograms.get(origin);
+            }
+            return histogram;
+        }
+    }
+
+}
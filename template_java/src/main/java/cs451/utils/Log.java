@@ -1,41 +1,154 @@
 package cs451.utils;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Output log of the process.
+ * Protocol threads only queue their lines : a dedicated writer thread gathers
+ * them in a buffer and writes it to the log file through a FileChannel once it
+ * holds BUFFER_BYTES, or FLUSH_NANOS after its first line, whichever comes
+ * first. {@link #close()} writes every queued line from the calling thread, and
+ * lines logged afterwards are written right away. The log file is opened by
+ * {@link #open(Path)}, lines logged before are refused.
+ */
 public class Log {
 
-    public static Path logPath;
-    public static Map<Integer, String> logs = new ConcurrentHashMap<>();
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final long FLUSH_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<String>();
+    private static final AtomicBoolean started = new AtomicBoolean(false);
+    private static volatile boolean closed = false;
+    // the buffer and the channel are guarded by writeLock
+    private static final Object writeLock = new Object();
+    private static final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private static long bufferedSince;
+    private static volatile FileChannel channel;
+
+    /**
+     * Opens the log file, lines are appended to it.
+     *
+     * @param path the path of the log file
+     * @throws UncheckedIOException if the file cannot be opened
+     */
+    public static void open(Path path) {
+        synchronized (writeLock) {
+            try {
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open the log " + path, e);
+            }
+        }
+    }
 
     /**
      * Appends the given log message to the log file.
-     * 
+     *
      * @param log the log message to be appended to the log file
+     * @throws IllegalStateException if the log file is not open
      */
     public static void logFile(String log) {
-        try {
-            Files.write(logPath, log.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (channel == null) {
+            throw new IllegalStateException("The log is not open");
+        }
+        pending.add(log);
+        if (closed) {
+            drain();
+            return;
+        }
+        if (!started.get() && started.compareAndSet(false, true)) {
+            Thread writer = new Thread(Log::writeLoop, "log-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Stops the writer thread and writes every queued line to the log file.
+     */
+    public static void close() {
+        closed = true;
+        drain();
+        synchronized (writeLock) {
+            if (channel != null) {
+                try {
+                    channel.force(false);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private static void writeLoop() {
+        while (!closed) {
+            boolean idle;
+            synchronized (writeLock) {
+                idle = true;
+                String line;
+                while (buffer.position() < BUFFER_BYTES && (line = pending.poll()) != null) {
+                    append(line);
+                    idle = false;
+                }
+                if (buffer.position() > 0 && System.nanoTime() - bufferedSince >= FLUSH_NANOS) {
+                    write();
+                }
+            }
+            if (idle) {
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
         }
     }
 
-    public static void addLog(Integer index, String log) {
-        logs.put(index, log);
+    private static void drain() {
+        synchronized (writeLock) {
+            String line;
+            while ((line = pending.poll()) != null) {
+                append(line);
+            }
+            write();
+        }
     }
 
-    public static void flush() {
-        List<Integer> keys = new ArrayList<Integer>(logs.keySet());
-        keys.sort((a, b) -> a.compareTo(b));
-        for (Integer key : keys) {
-            logFile(logs.get(key));
+    private static void append(String line) {
+        byte[] bytes = line.getBytes();
+        if (bytes.length > buffer.remaining()) {
+            write();
+        }
+        if (bytes.length > buffer.capacity()) {
+            writeFully(ByteBuffer.wrap(bytes));
+            return;
+        }
+        if (buffer.position() == 0) {
+            bufferedSince = System.nanoTime();
+        }
+        buffer.put(bytes);
+    }
+
+    private static void write() {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private static void writeFully(ByteBuffer bytes) {
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
 }
@@ -0,0 +1,211 @@
+package cs451.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the metrics of the protocol layers of one stack.
+ * Every host creates the registry of its stack (see
+ * cs451.Links.UDPHost#getMetrics()), and the layers built on the host register
+ * their metrics there by name, prefixed by the layer ("sbl.retransmissions",
+ * "fifo.past", ...) :
+ * - counters are striped LongAdders, cheap to increment from every thread
+ * - gauges read a value, e.g. a queue depth, when metrics are dumped. Every
+ * instance of a layer adds its supplier to the gauge of its name, so the gauge
+ * is the sum over the instances. Gauges are only registered when
+ * {@link #isEnabled()}, and can be unregistered through their handle
+ * - histograms record values such as latencies in log-linear buckets
+ * Counters and histograms are shared by name as well. Registries of several
+ * stacks, such as the processes of a benchmark, are summed by
+ * {@link #snapshot(Collection)}.
+ *
+ * When the {@link Options#METRICS_INTERVAL_MILLIS} option is set, a daemon
+ * thread appends a line with every metric of the process to a side file at
+ * that interval, and a last one when the process stops. The output log is
+ * never written to.
+ */
+public class Metrics {
+
+    private static final Gauge NONE = () -> {
+    };
+    private static final long startNanos = System.nanoTime();
+    private static volatile Path path;
+    private static ScheduledExecutorService dumper;
+    private static Metrics dumped;
+
+    private final boolean enabled = isEnabled();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<String, LongAdder>();
+    private final Map<String, List<LongSupplier>> gauges = new ConcurrentSkipListMap<String, List<LongSupplier>>();
+    private final Map<String, Histogram> histograms = new ConcurrentSkipListMap<String, Histogram>();
+
+    /**
+     * Handle of a registered gauge.
+     */
+    public interface Gauge {
+        /**
+         * Removes the supplier from its gauge, which is no longer read.
+         */
+        void unregister();
+    }
+
+    /**
+     * Returns whether gauges are registered, as set by the
+     * {@link Options#METRICS} and {@link Options#METRICS_INTERVAL_MILLIS}
+     * options.
+     *
+     * @return true if metrics are enabled
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(Options.getString(Options.METRICS, "false"))
+                || Options.getInt(Options.METRICS_INTERVAL_MILLIS, 0) > 0;
+    }
+
+    /**
+     * Returns the counter of the given name, created at 0 if needed.
+     *
+     * @param name name of the counter
+     * @return the counter
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Adds a supplier to the gauge of the given name, whose value is the sum of
+     * its suppliers. Does nothing unless metrics are enabled.
+     *
+     * @param name     name of the gauge
+     * @param supplier supplier of the value, called from the dumping thread
+     * @return the handle unregistering the supplier
+     */
+    public Gauge gauge(String name, LongSupplier supplier) {
+        if (!enabled) {
+            return NONE;
+        }
+        List<LongSupplier> suppliers = gauges.computeIfAbsent(name, n -> new CopyOnWriteArrayList<LongSupplier>());
+        suppliers.add(supplier);
+        return () -> suppliers.remove(supplier);
+    }
+
+    /**
+     * Returns the histogram of the given name, created empty if needed.
+     *
+     * @param name name of the histogram
+     * @return the histogram
+     */
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Starts dumping the metrics of the given registry next to the given output
+     * file if the {@link Options#METRICS_INTERVAL_MILLIS} option is set. Does
+     * nothing if metrics are already dumped.
+     *
+     * @param output   path of the output log
+     * @param registry registry of the stack of the process
+     */
+    public static synchronized void start(String output, Metrics registry) {
+        int interval = Options.getInt(Options.METRICS_INTERVAL_MILLIS, 0);
+        if (interval <= 0 || dumper != null) {
+            return;
+        }
+        path = Paths.get(Options.getString(Options.METRICS_FILE, output + ".metrics"));
+        dumped = registry;
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-dumper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(Metrics::dump, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops dumping the metrics and writes their last values.
+     */
+    public static synchronized void close() {
+        if (dumper == null) {
+            return;
+        }
+        dumper.shutdownNow();
+        dumper = null;
+        dump();
+    }
+
+    /**
+     * Returns a line with the value of every metric of this registry, see
+     * {@link #snapshot(Collection)}.
+     *
+     * @return the line, without line break
+     */
+    public String snapshot() {
+        return snapshot(Collections.singletonList(this));
+    }
+
+    /**
+     * Returns a line with the value of every metric of the given registries,
+     * summed by name : the milliseconds since startup, then name=value pairs
+     * ordered by name. Histograms give their count, 50th and 99th percentiles
+     * and maximum.
+     *
+     * @param registries the registries, one per stack
+     * @return the line, without line break
+     */
+    public static String snapshot(Collection<Metrics> registries) {
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        Map<String, Long> values = new TreeMap<String, Long>();
+        Map<String, Histogram> merged = new TreeMap<String, Histogram>();
+        for (Metrics registry : registries) {
+            registry.counters.forEach((name, counter) -> counts.merge(name, counter.sum(), Long::sum));
+            registry.gauges.forEach((name, suppliers) -> {
+                for (LongSupplier supplier : suppliers) {
+                    values.merge(name, supplier.getAsLong(), Long::sum);
+                }
+            });
+            registry.histograms.forEach((name, histogram) -> merged.computeIfAbsent(name, n -> new Histogram())
+                    .add(histogram));
+        }
+        StringBuilder line = new StringBuilder();
+        line.append("t=").append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            line.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : values.entrySet()) {
+            line.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        for (Map.Entry<String, Histogram> entry : merged.entrySet()) {
+            Histogram histogram = entry.getValue();
+            line.append(' ').append(entry.getKey()).append("=n:").append(histogram.getCount())
+                    .append(",p50:").append(histogram.getPercentile(50))
+                    .append(",p99:").append(histogram.getPercentile(99))
+                    .append(",max:").append(histogram.getMax());
+        }
+        return line.toString();
+    }
+
+    private static synchronized void dump() {
+        try {
+            Files.write(path, (dumped.snapshot() + "\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (Exception e) {
+            // a gauge failing or the side file being unwritable must not stop the dumps
+            e.printStackTrace();
+        }
+    }
+
+}
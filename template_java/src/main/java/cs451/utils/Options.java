@@ -0,0 +1,193 @@
+package cs451.utils;
+
+/**
+ * Runtime options of the protocol stack.
+ * The command line of the project is fixed, so options are read from system
+ * properties, e.g. java -Dcs451.transport=nio -jar da_proc.jar ...
+ */
+public class Options {
+
+    /**
+     * Transport used by the hosts : "socket" (java.net.DatagramSocket, default)
+     * or "nio" (selector driven java.nio.channels.DatagramChannel). Stacks
+     * running in the same JVM are connected in memory by a
+     * cs451.Links.LoopbackNetwork instead, see LoopbackBenchmark in the
+     * benchmarks module.
+     */
+    public static final String TRANSPORT = "cs451.transport";
+
+    /**
+     * Number of workers decoding and dispatching received packets, sharded by
+     * sender id (default 1). With 0 packets are handled by the receiving thread.
+     * The fused pipeline uses at most one worker, see Pipeline.
+     */
+    public static final String RECEIVE_WORKERS = "cs451.receiveWorkers";
+
+    /**
+     * Number of datagrams each receive worker can have waiting (default 128),
+     * beyond which received datagrams are dropped.
+     */
+    public static final String RECEIVE_RING_SIZE = "cs451.receiveRingSize";
+
+    /**
+     * How idle receive workers wait for datagrams : "busy-spin", "yield" or
+     * "park" (default).
+     */
+    public static final String WAIT_STRATEGY = "cs451.waitStrategy";
+
+    /**
+     * Maximum size in bytes of a datagram packing several messages for the same
+     * destination (default 1472, an Ethernet MTU minus IP and UDP headers).
+     */
+    public static final String BATCH_BYTES = "cs451.batchBytes";
+
+    /**
+     * Longest time in microseconds a message waits for others to share its
+     * datagram (default 200). 0 sends every message in its own datagram.
+     */
+    public static final String BATCH_DELAY_MICROS = "cs451.batchDelayMicros";
+
+    /**
+     * Number of messages waiting for room in the congestion window of a
+     * destination that are kept as objects (default 65536), beyond which
+     * messages to it wait encoded. See StubbornLink.
+     */
+    public static final String SEND_BACKLOG = "cs451.sendBacklog";
+
+    /**
+     * Wiring of the layers : "reactive" (default), each layer hands messages to
+     * the next through a buffered SubmissionPublisher, or "fused", layers call
+     * each other directly on the receiving thread (see Pipeline).
+     */
+    public static final String PIPELINE = "cs451.pipeline";
+
+    /**
+     * Threads running the stack : "platform" (default), a fixed pool per
+     * process, or "virtual", a virtual thread per task on JDKs providing them
+     * (see Execution).
+     */
+    public static final String EXECUTOR = "cs451.executor";
+
+    /**
+     * "true" to log the trace of every layer (default false). Read once at
+     * startup, see Trace.
+     */
+    public static final String TRACE = "cs451.trace";
+
+    /**
+     * Interval in milliseconds at which the metrics of the layers are written to
+     * a side file (default 0, never). See Metrics.
+     */
+    public static final String METRICS_INTERVAL_MILLIS = "cs451.metricsIntervalMillis";
+
+    /**
+     * Whether the layers register their gauges (default false, true when
+     * METRICS_INTERVAL_MILLIS is set). Counters and histograms are always kept.
+     * See Metrics.
+     */
+    public static final String METRICS = "cs451.metrics";
+
+    /**
+     * File the metrics are appended to (default the output file followed by
+     * ".metrics").
+     */
+    public static final String METRICS_FILE = "cs451.metricsFile";
+
+    /**
+     * One in how many broadcasts carry their origin time to trace their delivery
+     * latency (default 0, none), e.g. 100 for 1%. See Latency.
+     */
+    public static final String LATENCY_SAMPLING = "cs451.latencySampling";
+
+    /**
+     * Seed of the random choices of a simulation (default 1). Runs with the same
+     * seed and options are identical. See cs451.Simulation.Simulation.
+     */
+    public static final String SIM_SEED = "cs451.simSeed";
+
+    /**
+     * One-way latency of the simulated network in microseconds (default 500).
+     */
+    public static final String SIM_LATENCY_MICROS = "cs451.simLatencyMicros";
+
+    /**
+     * Random delay in microseconds added to the latency of each simulated
+     * datagram (default 0). Above 0, datagrams overtake each other.
+     */
+    public static final String SIM_JITTER_MICROS = "cs451.simJitterMicros";
+
+    /**
+     * Probability that the simulated network drops a datagram, between 0
+     * (default) and 1.
+     */
+    public static final String SIM_LOSS = "cs451.simLoss";
+
+    /**
+     * Crash schedule of a simulation as comma separated id@millis entries, e.g.
+     * "3@1000,7@2500" (default none). Crashed processes never recover.
+     */
+    public static final String SIM_CRASHES = "cs451.simCrashes";
+
+    /**
+     * Virtual time in seconds after which a simulation stops, even with events
+     * left (default 3600).
+     */
+    public static final String SIM_DURATION_SECONDS = "cs451.simDurationSeconds";
+
+    private Options() {
+    }
+
+    /**
+     * Returns the value of an option.
+     *
+     * @param key          name of the option
+     * @param defaultValue value returned if the option is not set
+     * @return the value of the option
+     */
+    public static String getString(String key, String defaultValue) {
+        return System.getProperty(key, defaultValue);
+    }
+
+    /**
+     * Returns the value of an integer option.
+     *
+     * @param key          name of the option
+     * @param defaultValue value returned if the option is not set or is not a
+     *                     number
+     * @return the value of the option
+     */
+    public static int getInt(String key, int defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.strip());
+        } catch (NumberFormatException e) {
+            System.err.println("Option " + key + " must be a number, using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns the value of a decimal option.
+     *
+     * @param key          name of the option
+     * @param defaultValue value returned if the option is not set or is not a
+     *                     number
+     * @return the value of the option
+     */
+    public static double getDouble(String key, double defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.strip());
+        } catch (NumberFormatException e) {
+            System.err.println("Option " + key + " must be a number, using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package cs451.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes lines numbered by slot to the output log in slot order, as soon as
+ * every earlier slot was written. Lines decided out of order wait only while
+ * an earlier slot is missing, so at most the lines beyond the first gap are
+ * held in memory, and nothing is left to write at shutdown but the queue of
+ * {@link Log}.
+ */
+public class OrderedLog {
+
+    private int next;
+    // lines of the slots after the first missing one, guarded by this
+    private final Map<Integer, String> waiting = new HashMap<Integer, String>();
+
+    /**
+     * Creates a log whose first line is the one of the given slot.
+     *
+     * @param firstSlot the slot of the first line
+     */
+    public OrderedLog(int firstSlot) {
+        this.next = firstSlot;
+    }
+
+    /**
+     * Adds the line of a slot, and writes it along with the lines that were
+     * waiting for it if every earlier slot was written. The first line added for
+     * a slot is kept.
+     *
+     * @param slot the slot of the line
+     * @param line the line, ending with a line break
+     */
+    public synchronized void add(int slot, String line) {
+        if (slot < next) {
+            return;
+        }
+        if (slot > next) {
+            waiting.putIfAbsent(slot, line);
+            return;
+        }
+        Log.logFile(line);
+        next++;
+        while ((line = waiting.remove(next)) != null) {
+            Log.logFile(line);
+            next++;
+        }
+    }
+
+    /**
+     * Returns the number of lines waiting for an earlier slot.
+     *
+     * @return the number of buffered lines
+     */
+    public synchronized int getWaiting() {
+        return waiting.size();
+    }
+
+}
@@ -0,0 +1,48 @@
+package cs451.utils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Builds the publishers linking the layers of the stack, following the
+ * {@link Options#PIPELINE} option.
+ * In "reactive" mode (default), every layer publishes through a
+ * SubmissionPublisher with its own buffer, so each hop is a task handed to the
+ * executor. In "fused" mode, layers publish through {@link DirectPublisher}s and
+ * a received message goes up the whole stack as direct calls on the thread that
+ * decoded it : the receiving thread, or the receive worker. Layers are then
+ * called by one thread at a time without any lock, so received messages are
+ * decoded by at most one receive worker. Messages are only queued at the
+ * socket and in the receive ring.
+ */
+public class Pipeline {
+
+    public static final int BUFFER_SIZE = 256;
+
+    private Pipeline() {
+    }
+
+    /**
+     * Returns whether the stack is built in fused mode.
+     *
+     * @return true if layers call each other directly
+     */
+    public static boolean isFused() {
+        return "fused".equals(Options.getString(Options.PIPELINE, "reactive"));
+    }
+
+    /**
+     * Creates the publisher a layer uses to deliver messages to the layer above.
+     *
+     * @param <T>      the type of the published items
+     * @param executor the executor of the stack
+     * @return the publisher of the layer
+     */
+    public static <T> SubmissionPublisher<T> newPublisher(ExecutorService executor) {
+        if (isFused()) {
+            return new DirectPublisher<T>(executor);
+        }
+        return new SubmissionPublisher<T>(executor, BUFFER_SIZE);
+    }
+
+}
@@ -0,0 +1,25 @@
+package cs451.utils;
+
+import java.util.logging.Level;
+
+/**
+ * Switch of the trace logs of the protocol layers, read once from the
+ * {@link Options#TRACE} option.
+ * Trace statements are guarded by {@code if (Trace.ENABLED)}. ENABLED is a
+ * constant, so when tracing is off the JIT drops the guarded statements and
+ * their messages are never built.
+ */
+public class Trace {
+
+    public static final boolean ENABLED = Boolean.parseBoolean(Options.getString(Options.TRACE, "false"));
+
+    /**
+     * Level of the loggers of the layers : everything when tracing, nothing
+     * otherwise.
+     */
+    public static final Level LEVEL = ENABLED ? Level.ALL : Level.OFF;
+
+    private Trace() {
+    }
+
+}